@@ -0,0 +1,140 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package io.github.valters.xsdiff.app;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.function.Function;
+
+/**
+ * Collects console output (System.out and System.err) of a worker thread, so that logs of files compared at the same time
+ * do not interleave: output is printed as one block when the file is done.
+ * <p>
+ * Capture is per thread. Tasks that a worker hands to other threads (time limited views) take the capture along when wrapped
+ * with {@link #propagate(Runnable)}; output of other threads goes straight to the console.
+ */
+final class ConsoleCapture {
+
+    private static final ThreadLocal<ConsoleCapture> CURRENT = new ThreadLocal<>();
+
+    /** real console streams */
+    private static PrintStream stdout;
+    private static PrintStream stderr;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    private ConsoleCapture() {
+    }
+
+    /** route System.out and System.err through the per-thread buffers: threads that are not capturing still print directly */
+    static synchronized void install() {
+        if( stdout != null ) {
+            return;
+        }
+        stdout = System.out;
+        stderr = System.err;
+        System.setOut( new PrintStream( new Router( stdout, capture -> capture.out ), true ) );
+        System.setErr( new PrintStream( new Router( stderr, capture -> capture.err ), true ) );
+    }
+
+    /** put back the real console streams */
+    static synchronized void uninstall() {
+        if( stdout == null ) {
+            return;
+        }
+        System.out.flush();
+        System.err.flush();
+        System.setOut( stdout );
+        System.setErr( stderr );
+        stdout = null;
+        stderr = null;
+    }
+
+    /** @return task that collects its output into the capture of current thread (if any), wherever it runs */
+    static Runnable propagate( final Runnable task ) {
+        final ConsoleCapture capture = CURRENT.get();
+        if( capture == null ) {
+            return task;
+        }
+        return () -> {
+            CURRENT.set( capture );
+            try {
+                task.run();
+            }
+            finally {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    /** start collecting output of current thread */
+    static ConsoleCapture start() {
+        final ConsoleCapture capture = new ConsoleCapture();
+        CURRENT.set( capture );
+        return capture;
+    }
+
+    /** stop collecting output of current thread */
+    void stop() {
+        CURRENT.remove();
+    }
+
+    /** print collected output to the real console */
+    void replay() {
+        final PrintStream realOut = stdout != null ? stdout : System.out;
+        final PrintStream realErr = stderr != null ? stderr : System.err;
+        synchronized( ConsoleCapture.class ) {
+            realOut.write( out.toByteArray(), 0, out.size() );
+            realOut.flush();
+            realErr.write( err.toByteArray(), 0, err.size() );
+            realErr.flush();
+        }
+    }
+
+    /** sends bytes to buffer of current thread, if it is capturing, or to the real console */
+    private static class Router extends OutputStream {
+
+        private final PrintStream console;
+        private final Function<ConsoleCapture, ByteArrayOutputStream> buffer;
+
+        Router( final PrintStream console, final Function<ConsoleCapture, ByteArrayOutputStream> buffer ) {
+            this.console = console;
+            this.buffer = buffer;
+        }
+
+        private OutputStream target() {
+            final ConsoleCapture capture = CURRENT.get();
+            return capture != null ? buffer.apply( capture ) : console;
+        }
+
+        @Override
+        public void write( final int b ) throws IOException {
+            target().write( b );
+        }
+
+        @Override
+        public void write( final byte[] b, final int off, final int len ) throws IOException {
+            target().write( b, off, len );
+        }
+
+        @Override
+        public void flush() throws IOException {
+            console.flush();
+        }
+    }
+}
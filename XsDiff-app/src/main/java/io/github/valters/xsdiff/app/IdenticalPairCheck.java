@@ -0,0 +1,225 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package io.github.valters.xsdiff.app;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.DefaultHandler2;
+import org.xml.sax.ext.Locator2;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+
+/**
+ * Cheap test whether a file pair has nothing to report, done before the files are parsed into documents and compared.
+ * <p>
+ * Files with the same bytes are identical. Otherwise both files are read with SAX into a canonical hash which leaves out
+ * what the comparison ignores as well: comments, whitespace around text, and the order of attributes. Everything else
+ * (including namespace declarations and the whole xml declaration) goes into the hash, so equal hashes mean the comparison
+ * would find no differences.
+ */
+final class IdenticalPairCheck {
+
+    private static final SAXParserFactory PARSER_FACTORY = newParserFactory();
+
+    /** reads the xml declaration: SAX does not report its standalone flag */
+    private static final XMLInputFactory DECLARATION_FACTORY = newDeclarationFactory();
+
+    private IdenticalPairCheck() {
+    }
+
+    private static SAXParserFactory newParserFactory() {
+        final SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware( true );
+        return factory;
+    }
+
+    private static XMLInputFactory newDeclarationFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty( XMLInputFactory.SUPPORT_DTD, false );
+        factory.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false );
+        return factory;
+    }
+
+    /** @return true if comparing the two files would find no differences; false when not sure */
+    static boolean identical( final Path file1, final Path file2 ) {
+        try {
+            if( Files.size( file1 ) == Files.size( file2 ) && MoreFiles.asByteSource( file1 ).contentEquals( MoreFiles.asByteSource( file2 ) ) ) {
+                return true;
+            }
+            return canonicalHash( file1 ).equals( canonicalHash( file2 ) );
+        }
+        catch( final IOException | SAXException | ParserConfigurationException | XMLStreamException e ) {
+            return false; // full comparison will report the problem
+        }
+    }
+
+    /** @return hash of file content that does not change with comments, whitespace around text, or attribute order */
+    static HashCode canonicalHash( final Path file ) throws IOException, SAXException, ParserConfigurationException, XMLStreamException {
+        final SAXParser parser;
+        synchronized( PARSER_FACTORY ) {
+            parser = PARSER_FACTORY.newSAXParser();
+        }
+        final CanonicalHandler handler = new CanonicalHandler();
+        handler.put( 'S' ).put( standalone( file ) );
+        parser.setProperty( "http://xml.org/sax/properties/lexical-handler", handler );
+        try( final InputStream in = Files.newInputStream( file ) ) {
+            final InputSource source = new InputSource( in );
+            source.setSystemId( file.toUri().toString() );
+            parser.parse( source, handler );
+        }
+        return handler.hasher.hash();
+    }
+
+    /** @return standalone flag of the xml declaration: "yes", "no", or "" when not given */
+    private static String standalone( final Path file ) throws IOException, XMLStreamException {
+        try( final InputStream in = Files.newInputStream( file ) ) {
+            final XMLStreamReader reader;
+            synchronized( DECLARATION_FACTORY ) {
+                reader = DECLARATION_FACTORY.createXMLStreamReader( in ); // declaration is read right away, rest of the file is not
+            }
+            try {
+                if( ! reader.standaloneSet() ) {
+                    return "";
+                }
+                return reader.isStandalone() ? "yes" : "no";
+            }
+            finally {
+                reader.close();
+            }
+        }
+    }
+
+    /** feeds document content to the hasher, each item tagged with its kind */
+    private static class CanonicalHandler extends DefaultHandler2 {
+
+        private final Hasher hasher = Hashing.sha256().newHasher();
+
+        /** text since last markup: compared after trimming, like the comparison does */
+        private final StringBuilder text = new StringBuilder();
+        private boolean inCdata;
+
+        private Locator locator;
+        private boolean rootSeen;
+
+        @Override
+        public void setDocumentLocator( final Locator locator ) {
+            this.locator = locator;
+        }
+
+        @Override
+        public void startDTD( final String name, final String publicId, final String systemId ) {
+            put( 'D' ).put( name ).put( String.valueOf( publicId ) ).put( String.valueOf( systemId ) );
+        }
+
+        @Override
+        public void startPrefixMapping( final String prefix, final String uri ) {
+            flushText();
+            put( 'N' ).put( prefix ).put( uri );
+        }
+
+        @Override
+        public void startElement( final String uri, final String localName, final String qName, final Attributes attributes ) {
+            flushText();
+            if( ! rootSeen ) {
+                rootSeen = true;
+                if( locator instanceof Locator2 ) { // xml declaration
+                    put( 'X' ).put( String.valueOf( ( (Locator2) locator ).getXMLVersion() ) ).put( String.valueOf( ( (Locator2) locator ).getEncoding() ) );
+                }
+            }
+            put( 'E' ).put( uri ).put( localName ).put( qName );
+
+            final Integer[] order = new Integer[attributes.getLength()];
+            for( int i = 0; i < order.length; i++ ) {
+                order[i] = i;
+            }
+            Arrays.sort( order, Comparator.<Integer, String>comparing( attributes::getURI ).thenComparing( attributes::getLocalName ) );
+            for( final int i : order ) {
+                put( 'A' ).put( attributes.getURI( i ) ).put( attributes.getLocalName( i ) ).put( attributes.getQName( i ) ).put( attributes.getValue( i ) );
+            }
+        }
+
+        @Override
+        public void endElement( final String uri, final String localName, final String qName ) {
+            flushText();
+            put( 'e' );
+        }
+
+        @Override
+        public void characters( final char[] ch, final int start, final int length ) {
+            text.append( ch, start, length );
+        }
+
+        @Override
+        public void processingInstruction( final String target, final String data ) {
+            flushText();
+            put( 'P' ).put( target ).put( data );
+        }
+
+        @Override
+        public void startCDATA() {
+            flushText();
+            inCdata = true;
+        }
+
+        @Override
+        public void endCDATA() {
+            flushText();
+            inCdata = false;
+        }
+
+        @Override
+        public void comment( final char[] ch, final int start, final int length ) {
+            flushText(); // text around a comment stays separate
+        }
+
+        private void flushText() {
+            final String trimmed = text.toString().trim();
+            text.setLength( 0 );
+            if( ! trimmed.isEmpty() ) {
+                put( inCdata ? 'C' : 'T' ).put( trimmed );
+            }
+        }
+
+        private CanonicalHandler put( final char kind ) {
+            hasher.putByte( (byte) kind );
+            return this;
+        }
+
+        private CanonicalHandler put( final String value ) {
+            hasher.putInt( value.length() ).putString( value, StandardCharsets.UTF_8 );
+            return this;
+        }
+    }
+}
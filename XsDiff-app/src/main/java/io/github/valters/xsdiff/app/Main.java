@@ -18,7 +18,7 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
@@ -27,21 +27,48 @@ import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.w3c.dom.Document;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import com.google.common.base.Preconditions;
 import com.google.common.io.ByteSink;
+import com.google.common.primitives.Ints;
 
+import io.github.valters.xsdiff.format.RenderBudget;
+import io.github.valters.xsdiff.format.RenderRunner;
+import io.github.valters.xsdiff.format.Renderer;
+import io.github.valters.xsdiff.report.CompatibilityCheck;
+import io.github.valters.xsdiff.report.CompatibilityCheck.Verdict;
 import io.github.valters.xsdiff.report.HtmlContentOutput;
 import io.github.valters.xsdiff.report.HtmlRes;
+import io.github.valters.xsdiff.report.IgnoreRules;
 import io.github.valters.xsdiff.report.XmlDomUtils;
 import io.github.valters.xsdiff.report.XmlSchemaDiffReport;
 
@@ -49,8 +76,13 @@ import io.github.valters.xsdiff.report.XmlSchemaDiffReport;
 public class Main {
 
     public static void main( final String[] args ) {
-        if( args.length == 2 || args.length == 3 ) {
-            new App().run( args );
+        final App app = new App();
+        final List<String> paths = app.parseOptions( args );
+        if( paths != null && app.isCheck() && paths.size() == 2 ) {
+            System.exit( app.runCheck( paths ) );
+        }
+        else if( paths != null && ! app.isCheck() && ( paths.size() == 2 || paths.size() == 3 ) ) {
+            app.run( paths );
         }
         else {
             usage();
@@ -58,9 +90,23 @@ public class Main {
     }
 
     private static void usage() {
-        System.out.println( "Usage: xsdiff-app <folder1> <folder2> [report-output-folder]" );
-        System.out.println( "   or: xsdiff-app <file1.xsd> <file2.xsd> [report-output-folder]" );
+        System.out.println( "Usage: xsdiff-app [options] <folder1> <folder2> [report-output-folder]" );
+        System.out.println( "   or: xsdiff-app [options] <file1.xsd> <file2.xsd> [report-output-folder]" );
+        System.out.println( "   or: xsdiff-app [options] <archive1.jar> <archive2.jar> [report-output-folder]" );
+        System.out.println( "   or: xsdiff-app --check[=any] <folder1|file1.xsd|archive1.jar> <folder2|file2.xsd|archive2.jar>" );
         System.out.println( "When comparing whole folders, a schema.lst 'listing' file must exist in <folder2>." );
+        System.out.println( "A .zip or .jar archive is read like a folder; without a schema.lst, all .xsd files in <archive2> are compared." );
+        System.out.println( "Options:" );
+        System.out.println( "  --threads N   compare N files at the same time (largest first); for single file pair, compare schema components in parallel" );
+        System.out.println( "  --check       no report, only tell if changes are IDENTICAL, ADDITIVE or BREAKING; exit status 1 on first breaking change" );
+        System.out.println( "  --check=any   same, but exit status 1 on first change of any kind (exit status 2 means the check itself failed)" );
+        System.out.println( "  --ignore FILE   do not compare schema parts matched by rules in FILE (xs:annotation, complexType name=Legacy*, @id; one per line)" );
+        System.out.println( "  --max-differences N   show only first N differences of each file, and stop comparing it after them" );
+        System.out.println( "  --renderers LIST   views to produce for each change, comma separated: semantic,wiked,histogram,daisy (default: all)" );
+        System.out.println( "  --budget VIEW=MILLIS[/KB]   time and input size limit of wiked, histogram or daisy view of a change, 0 for no limit (default: none);" );
+        System.out.println( "                when exceeded, a note and histogram view are shown instead. example: --budget daisy=10000/512" );
+        System.out.println( "  --with-referenced   also compare schemas that listed files include or import (by relative schemaLocation), once each, in own report" );
+        System.out.println( "  --no-cache    always compare folder files, do not reuse reports cached by earlier runs (in " + App.CACHE_FOLDER + ")" );
     }
 
     /** app bootstrap */
@@ -68,25 +114,181 @@ public class Main {
 
         /** list of files to compare: single file name on each line */
         private static final String LISTING_FILE = "schema.lst";
+        /** names of compared files without differences (and without a report) */
+        private static final String UNCHANGED_FILE = "unchanged.lst";
         private static final DateTimeFormatter MINUTESTAMP = DateTimeFormatter.ofPattern( "HHmm" );
 
+        /** reports of unchanged file pairs are reused from here */
+        static final Path CACHE_FOLDER = Paths.get( System.getProperty( "user.home" ), ".xsdiff", "cache" );
+        private static final long CACHE_MAX_BYTES = 512L * 1024 * 1024;
+
         private String reportFolder = "report-" + LocalDate.now().format( DateTimeFormatter.ISO_LOCAL_DATE ) + "-" + LocalTime.now().format( MINUTESTAMP );
 
-        void run( final String[] args ) {
+        /** how many files (or schema components, for single file pair) to compare at the same time */
+        private int threads = 1;
+
+        /** differences of each file after this many are only counted; 0 for no limit */
+        private int maxDifferences;
+
+        /** parts of schemas that are not compared */
+        private IgnoreRules ignoreRules = IgnoreRules.NONE;
+        /** rules file content, for the report cache key */
+        private String ignoreRulesText = "";
+
+        /** views produced for each change */
+        private Set<Renderer> renderers = EnumSet.allOf( Renderer.class );
+
+        /** time and size limits of text diff views, so that one huge change does not stall the whole run */
+        private final Map<Renderer, RenderBudget> budgets = new EnumMap<>( Renderer.class );
+
+        /** runs time limited views of all files, on at most as many threads as files are compared */
+        private RenderRunner renderRunner;
+
+        /** check-only mode: fail (and stop) as soon as this verdict is reached; null when writing a report */
+        private Verdict failAt;
+
+        /** worst verdict of files checked so far */
+        private Verdict overallVerdict = Verdict.IDENTICAL;
+
+        /** set when schema components of a single file pair are compared in parallel */
+        private ForkJoinPool componentPool;
+
+        /** reports of folder files compared earlier; null if disabled */
+        private ReportCache cache = new ReportCache( CACHE_FOLDER, CACHE_MAX_BYTES );
+
+        /** also compare schemas that listed files include/import, when they are not listed themselves */
+        private boolean compareReferenced;
+
+        /** schemas included/imported by files of each compared folder */
+        private SchemaReferences references1;
+        private SchemaReferences references2;
+
+        /** names (as given by {@link SchemaReferences#name(String)}) of all files compared in this run */
+        private Set<String> comparedFiles = Collections.emptySet();
+
+        /** listed files that need no report: comparison would not find any differences */
+        private final Queue<String> unchangedFiles = new ConcurrentLinkedQueue<>();
+
+        /** referenced file name to its short comparison status */
+        private final Map<String, String> referenceStatus = new ConcurrentHashMap<>();
+
+        /** @return remaining (positional) arguments, or null if options are not valid */
+        List<String> parseOptions( final String[] args ) {
+            final List<String> paths = new ArrayList<>();
+            for( int i = 0; i < args.length; i++ ) {
+                if( "--threads".equals( args[i] ) && i + 1 < args.length ) {
+                    final Integer value = Ints.tryParse( args[++i] );
+                    if( value == null || value < 1 ) {
+                        System.out.println( "Error, --threads expects a positive number: " + args[i] );
+                        return null;
+                    }
+                    threads = value;
+                }
+                else if( "--max-differences".equals( args[i] ) && i + 1 < args.length ) {
+                    final Integer value = Ints.tryParse( args[++i] );
+                    if( value == null || value < 1 ) {
+                        System.out.println( "Error, --max-differences expects a positive number: " + args[i] );
+                        return null;
+                    }
+                    maxDifferences = value;
+                }
+                else if( "--ignore".equals( args[i] ) && i + 1 < args.length ) {
+                    final Path rulesFile = Paths.get( args[++i] );
+                    try {
+                        ignoreRulesText = new String( Files.readAllBytes( rulesFile ), StandardCharsets.UTF_8 );
+                        ignoreRules = IgnoreRules.parse( Arrays.asList( ignoreRulesText.split( "\\R" ) ) );
+                    }
+                    catch( final IOException | IllegalArgumentException e ) {
+                        System.out.println( "Error, failed to read ignore rules " + rulesFile + ": " + e.getMessage() );
+                        return null;
+                    }
+                }
+                else if( "--renderers".equals( args[i] ) && i + 1 < args.length ) {
+                    try {
+                        renderers = Renderer.parse( args[++i] );
+                    }
+                    catch( final IllegalArgumentException e ) {
+                        System.out.println( "Error, --renderers: " + e.getMessage() );
+                        return null;
+                    }
+                }
+                else if( "--budget".equals( args[i] ) && i + 1 < args.length ) {
+                    final String[] budget = args[++i].split( "=", 2 );
+                    try {
+                        if( budget.length != 2 ) {
+                            throw new IllegalArgumentException( "expected VIEW=MILLIS[/KB], got: " + args[i] );
+                        }
+                        final Renderer renderer = Renderer.parse( budget[0] ).iterator().next();
+                        if( renderer == Renderer.SEMANTIC ) {
+                            throw new IllegalArgumentException( "semantic view has no budget" );
+                        }
+                        budgets.put( renderer, RenderBudget.parse( budget[1] ) );
+                    }
+                    catch( final IllegalArgumentException e ) {
+                        System.out.println( "Error, --budget: " + e.getMessage() );
+                        return null;
+                    }
+                }
+                else if( "--check".equals( args[i] ) ) {
+                    failAt = Verdict.BREAKING;
+                }
+                else if( "--check=any".equals( args[i] ) ) {
+                    failAt = Verdict.ADDITIVE;
+                }
+                else if( "--with-referenced".equals( args[i] ) ) {
+                    compareReferenced = true;
+                }
+                else if( "--no-cache".equals( args[i] ) ) {
+                    cache = null;
+                }
+                else if( args[i].startsWith( "--" ) ) {
+                    System.out.println( "Error, unknown option: " + args[i] );
+                    return null;
+                }
+                else {
+                    paths.add( args[i] );
+                }
+            }
+            return paths;
+        }
+
+        void run( final List<String> args ) {
+            if( budgets.values().stream().anyMatch( RenderBudget::isTimeLimited ) ) {
+                renderRunner = new RenderRunner( threads, ConsoleCapture::propagate );
+            }
             try {
-                if( args.length == 3 ) {
-                    reportFolder = args[2];
+                if( args.size() == 3 ) {
+                    reportFolder = args.get( 2 );
+                }
+
+                final Path p1 = Paths.get( args.get( 0 ) );
+                final Path p2 = Paths.get( args.get( 1 ) );
+
+                if( isArchive( p1 ) || isArchive( p2 ) ) {
+                    runArchiveDiff( p1, p2, this::runDiff );
+                    System.out.println( "done" );
+                    return;
                 }
 
-                File f1 = Paths.get( args[0] ).toFile();
-                File f2 = Paths.get( args[1] ).toFile();
+                File f1 = p1.toFile();
+                File f2 = p2.toFile();
 
                 if( f1.isDirectory() && f2.isDirectory() ) {
-                    runDiff( f1.toPath(), f2.toPath(), LISTING_FILE );
+                    runDiff( f1.toPath(), f2.toPath(), collectLines( f2.toPath().resolve( LISTING_FILE ) ) );
                 }
 
                 if( f1.isFile() && f2.isFile() ) {
-                    runDiff( f1, f2 );
+                    if( threads > 1 ) {
+                        componentPool = new ForkJoinPool( threads );
+                    }
+                    try {
+                        runDiff( f1, f2 );
+                    }
+                    finally {
+                        if( componentPool != null ) {
+                            componentPool.shutdown();
+                        }
+                    }
                 }
 
                 System.out.println( "done" );
@@ -95,6 +297,125 @@ public class Main {
                 System.out.println( "Error, failed to run, exception occurred: " + e );
                 e.printStackTrace();
             }
+            finally {
+                if( renderRunner != null ) {
+                    renderRunner.close();
+                }
+            }
+        }
+
+        /** @return true if path is a zip (or jar) file */
+        static boolean isArchive( final Path path ) {
+            final String name = String.valueOf( path.getFileName() ).toLowerCase( Locale.ROOT );
+            return ( name.endsWith( ".zip" ) || name.endsWith( ".jar" ) ) && Files.isRegularFile( path );
+        }
+
+        boolean isCheck() {
+            return failAt != null;
+        }
+
+        /** check-only mode: no report, only the verdict; @return exit status */
+        int runCheck( final List<String> args ) {
+            try {
+                final Path p1 = Paths.get( args.get( 0 ) );
+                final Path p2 = Paths.get( args.get( 1 ) );
+
+                if( isArchive( p1 ) || isArchive( p2 ) ) {
+                    runArchiveDiff( p1, p2, this::runCheck );
+                }
+                else if( Files.isDirectory( p1 ) && Files.isDirectory( p2 ) ) {
+                    runCheck( p1, p2, collectLines( p2.resolve( LISTING_FILE ) ) );
+                }
+                else if( Files.isRegularFile( p1 ) && Files.isRegularFile( p2 ) ) {
+                    runCheck( p1, p2, String.valueOf( p2.getFileName() ) );
+                }
+                else {
+                    System.out.println( "Error, expected two folders, two files or two archives: " + p1 + ", " + p2 );
+                    return 2;
+                }
+
+                System.out.println( "verdict: " + overallVerdict );
+                return overallVerdict.compareTo( failAt ) >= 0 ? 1 : 0;
+            }
+            catch( final Exception e ) {
+                System.out.println( "Error, failed to run check, exception occurred: " + e );
+                e.printStackTrace();
+                return 2;
+            }
+        }
+
+        /** check listed files, until one fails */
+        void runCheck( final Path folder1, final Path folder2, final List<String> fileList ) throws Exception {
+            for( final String fileName : fileList ) {
+                runCheck( folder1.resolve( fileName ), folder2.resolve( fileName ), fileName );
+                if( overallVerdict.compareTo( failAt ) >= 0 ) {
+                    break;
+                }
+            }
+        }
+
+        /** check single file pair */
+        void runCheck( final Path f1, final Path f2, final String fileName ) throws Exception {
+            if( IdenticalPairCheck.identical( f1, f2 ) ) {
+                System.out.println( fileName + ": " + Verdict.IDENTICAL );
+                return;
+            }
+
+            final CompatibilityCheck check = new CompatibilityCheck( failAt ).withIgnoreRules( ignoreRules );
+            try( final SchemaBytes in1 = SchemaBytes.open( f1 );
+                 final SchemaBytes in2 = SchemaBytes.open( f2 ) ) {
+                final DocumentBuilder docBuilder = XmlDomUtils.documentBuilder();
+                final Document controlDoc = docBuilder.parse( in1.stream(), in1.systemId() );
+                final Document testDoc = docBuilder.parse( in2.stream(), in2.systemId() );
+                check.check( controlDoc, testDoc );
+            }
+
+            final String changes = check.getChanges().entrySet().stream()
+                    .map( kind -> kind.getKey() + ": " + kind.getValue().entrySet().stream()
+                            .map( change -> change.getValue() + " " + change.getKey().name().toLowerCase( Locale.ROOT ) )
+                            .collect( Collectors.joining( ", " ) ) )
+                    .collect( Collectors.joining( "; " ) );
+            System.out.println( fileName + ": " + check.getVerdict() + ( changes.isEmpty() ? "" : " (" + changes + ")" ) );
+
+            if( check.getVerdict().compareTo( overallVerdict ) > 0 ) {
+                overallVerdict = check.getVerdict();
+            }
+        }
+
+        /** work on a pair of folders, for the listed files */
+        interface FolderAction {
+            void run( Path folder1, Path folder2, List<String> fileList ) throws Exception;
+        }
+
+        /** run diff on two archives (or archive and folder): entries are read in place, without extracting */
+        void runArchiveDiff( final Path path1, final Path path2, final FolderAction action ) throws Exception {
+            try( final FileSystem zip1 = isArchive( path1 ) ? openArchive( path1 ) : null;
+                 final FileSystem zip2 = isArchive( path2 ) ? openArchive( path2 ) : null ) {
+
+                final Path folder1 = zip1 != null ? zip1.getPath( "/" ) : path1;
+                final Path folder2 = zip2 != null ? zip2.getPath( "/" ) : path2;
+                Preconditions.checkArgument( Files.isDirectory( folder1 ), "Error, expected folder or archive: %s", path1 );
+                Preconditions.checkArgument( Files.isDirectory( folder2 ), "Error, expected folder or archive: %s", path2 );
+
+                final Path listing = folder2.resolve( LISTING_FILE );
+                final List<String> fileList = Files.exists( listing ) || zip2 == null ? collectLines( listing ) : collectSchemas( folder2 );
+                action.run( folder1, folder2, fileList );
+            }
+        }
+
+        private static FileSystem openArchive( final Path archive ) throws IOException {
+            return FileSystems.newFileSystem( archive, (ClassLoader) null );
+        }
+
+        /** @return all .xsd files under the folder, relative to it */
+        List<String> collectSchemas( final Path folder ) throws IOException {
+            try( Stream<Path> files = Files.walk( folder ) ) {
+                return files.filter( file -> file.getFileName() != null && file.getFileName().toString().endsWith( ".xsd" ) )
+                        .filter( Files::isRegularFile )
+                        .map( file -> folder.relativize( file ).toString() )
+                        .sorted()
+                        .collect( Collectors.toList() );
+            }
         }
 
         /** run diff on single file pair */
@@ -111,42 +432,235 @@ public class Main {
 
             printFileComparisonHeader( contentOutput, f1, f2 );
 
-            runDiff( Files.newBufferedReader( f1 ),
-                    Files.newBufferedReader( f2 ),
-                    contentOutput );
+            try( final SchemaBytes in1 = SchemaBytes.open( f1 );
+                 final SchemaBytes in2 = SchemaBytes.open( f2 ) ) {
+                runDiff( in1, in2, contentOutput );
+            }
 
             contentOutput.finishOutput();
 
             writeResources( report );
         }
 
-        /** run diff on two folders, with a listing file */
-        void runDiff( final Path folder1, final Path folder2, final String listFilesToCompare ) throws Exception {
+        /** run diff on two folders, for the listed files */
+        void runDiff( final Path folder1, final Path folder2, final List<String> fileList ) throws Exception {
 
             final File report = new File( reportFolder );
             Preconditions.checkState( report.mkdir(), "Error, failed to create folder '%s'", report );
             System.out.println( "output: to folder '" + report + "'" );
 
-            final List<String> fileList = collectLines( folder2.resolve( listFilesToCompare ) );
+            references1 = new SchemaReferences( folder1 );
+            references2 = new SchemaReferences( folder2 );
+            final List<String> allFiles = compareReferenced ? withReferencedSchemas( folder1, folder2, fileList ) : fileList;
+            comparedFiles = allFiles.stream().map( references2::name ).collect( Collectors.toSet() );
 
+            if( threads > 1 ) {
+                runDiffConcurrently( folder1, folder2, report, allFiles );
+            }
+            else {
+                for( final String fileName : allFiles ) {
+                    runDiff( folder1, folder2, report, fileName );
+                }
+            }
+
+            writeUnchangedList( report );
+            writeResources( report );
+
+        }
+
+        /** @return listed files, followed by schemas they include or import (on either side) which are not listed, but exist in both folders: each is compared once, in its own report */
+        List<String> withReferencedSchemas( final Path folder1, final Path folder2, final List<String> fileList ) {
+            final Set<String> listed = new HashSet<>();
             for( final String fileName : fileList ) {
-                System.out.println( "compare: " + fileName );
-                final HtmlContentOutput contentOutput = HtmlContentOutput.startOutput( report, "diff-report-" + fileName + ".html" );
+                listed.add( references2.name( fileName ) );
+            }
+
+            final Set<String> referenced = new LinkedHashSet<>( references2.closure( fileList ) );
+            referenced.addAll( references1.closure( fileList ) );
+
+            final List<String> allFiles = new ArrayList<>( fileList );
+            for( final String fileName : referenced ) {
+                if( ! listed.contains( fileName ) && Files.isRegularFile( folder1.resolve( fileName ) ) && Files.isRegularFile( folder2.resolve( fileName ) ) ) {
+                    allFiles.add( fileName );
+                }
+            }
+            if( allFiles.size() > fileList.size() ) {
+                System.out.println( "also compare " + ( allFiles.size() - fileList.size() ) + " schema(s) referenced from listed files" );
+            }
+            return allFiles;
+        }
+
+        /** compare one file from the listing */
+        void runDiff( final Path folder1, final Path folder2, final File report, final String fileName ) throws Exception {
+            System.out.println( "compare: " + fileName );
+            final String reportFile = reportFileName( fileName );
 
-                final Path f1 = folder1.resolve( fileName );
-                final Path f2 = folder2.resolve( fileName );
+            final Path f1 = folder1.resolve( fileName );
+            final Path f2 = folder2.resolve( fileName );
 
-                printFileComparisonHeader( contentOutput, f1, f2 );
+            if( IdenticalPairCheck.identical( f1, f2 ) ) {
+                System.out.println( "unchanged, no report" );
+                unchangedFiles.add( fileName );
+                return;
+            }
 
-                runDiff( Files.newBufferedReader( f1 ),
-                        Files.newBufferedReader( f2 ),
-                        contentOutput );
+            final List<String> header = new ArrayList<>();
+            header.add( fileComparisonHeader( f1, f2 ) );
+            header.addAll( referenceNotes( folder1, folder2, fileName ) );
 
-                contentOutput.finishOutput();
+            final String cacheKey = cache != null ? cache.key( f1, f2, String.join( "\n", header ) + "\nmax-differences: " + maxDifferences + "\nrenderers: " + renderers + "\nbudgets: " + budgets + "\nignore:\n" + ignoreRulesText ) : null;
+            if( cacheKey != null ) {
+                final int differences = cache.restore( cacheKey, new File( report, reportFile ).toPath() );
+                if( differences >= 0 ) {
+                    System.out.println( "unchanged since earlier run, cached report: " + differences + " difference(s)" );
+                    return;
+                }
             }
 
-            writeResources( report );
+            final HtmlContentOutput contentOutput = HtmlContentOutput.startOutput( report, reportFile );
+
+            printFileComparisonHeader( contentOutput, header );
+
+            final XmlSchemaDiffReport diffReport;
+            try( final SchemaBytes in1 = SchemaBytes.open( f1 );
+                 final SchemaBytes in2 = SchemaBytes.open( f2 ) ) {
+                diffReport = runDiff( in1, in2, contentOutput );
+            }
+            final int differences = diffReport.getDifferenceCount();
+
+            contentOutput.finishOutput();
+            System.out.println( "found " + ( diffReport.isStopped() ? "at least " : "" ) + differences + " difference(s)" );
+
+            if( cacheKey != null && ! diffReport.hasAbandonedViews() ) { // a view that ran out of time may well finish next time
+                cache.store( cacheKey, new File( report, reportFile ).toPath(), differences );
+            }
+        }
+
+        /** list files that had nothing to report */
+        private void writeUnchangedList( final File report ) throws IOException {
+            if( unchangedFiles.isEmpty() ) {
+                return;
+            }
+            final List<String> unchanged = unchangedFiles.stream().sorted().collect( Collectors.toList() );
+            System.out.println( unchanged.size() + " file(s) unchanged, listed in " + UNCHANGED_FILE );
+            Files.write( new File( report, UNCHANGED_FILE ).toPath(), unchanged );
+        }
+
+        /** listed file may be in a sub-folder */
+        static String reportFileName( final String fileName ) {
+            return "diff-report-" + fileName.replace( '/', '_' ).replace( '\\', '_' ) + ".html";
+        }
+
+        /** @return one line for each schema that the file includes or imports: changes of a shared schema are only shown in its own report (if it is compared) */
+        List<String> referenceNotes( final Path folder1, final Path folder2, final String fileName ) {
+            final Set<String> referenced = new LinkedHashSet<>( references2.of( fileName ) );
+            referenced.addAll( references1.of( fileName ) );
+
+            final List<String> notes = new ArrayList<>( referenced.size() );
+            for( final String reference : referenced ) {
+                notes.add( "uses " + reference + ": " + referenceStatus.computeIfAbsent( reference, name -> referenceStatus( folder1.resolve( name ), folder2.resolve( name ), name ) ) );
+            }
+            return notes;
+        }
+
+        private String referenceStatus( final Path f1, final Path f2, final String name ) {
+            if( ! Files.isRegularFile( f1 ) ) {
+                return "added";
+            }
+            if( ! Files.isRegularFile( f2 ) ) {
+                return "removed";
+            }
+            if( IdenticalPairCheck.identical( f1, f2 ) ) {
+                return "unchanged";
+            }
+            return comparedFiles.contains( name ) ? "modified, see " + reportFileName( name ) : "modified";
+        }
+
+        /** compare files on a thread pool, largest files first so that a giant schema does not hold up the end of the run; console output of each file is printed together when it is done */
+        void runDiffConcurrently( final Path folder1, final Path folder2, final File report, final List<String> fileList ) throws Exception {
+            final List<FileTask> tasks = new ArrayList<>( fileList.size() );
+            for( final String fileName : fileList ) {
+                tasks.add( new FileTask( folder1, folder2, report, fileName ) );
+            }
+            tasks.sort( Comparator.comparingLong( FileTask::size ).reversed() );
+
+            ConsoleCapture.install();
+            final ExecutorService executor = Executors.newFixedThreadPool( threads );
+            try {
+                final CompletionService<FileTask> completion = new ExecutorCompletionService<>( executor );
+                for( final FileTask task : tasks ) {
+                    completion.submit( task );
+                }
+
+                Throwable failure = null;
+                int failed = 0;
+                for( int i = 0; i < tasks.size(); i++ ) {
+                    final FileTask done = completion.take().get();
+                    done.console.replay();
+                    if( done.failure != null ) {
+                        failed++;
+                        failure = failure == null ? done.failure : failure;
+                    }
+                }
+                if( failure != null ) {
+                    throw new RuntimeException( "Failed to compare " + failed + " file(s), first failure: " + failure, failure );
+                }
+            }
+            finally {
+                executor.shutdown();
+                ConsoleCapture.uninstall();
+            }
+        }
+
+        /** one file of the listing, compared on a worker thread */
+        private class FileTask implements Callable<FileTask> {
+            private final Path folder1;
+            private final Path folder2;
+            private final File report;
+            private final String fileName;
+            private final long size;
+
+            private ConsoleCapture console;
+            private Throwable failure;
+
+            FileTask( final Path folder1, final Path folder2, final File report, final String fileName ) {
+                this.folder1 = folder1;
+                this.folder2 = folder2;
+                this.report = report;
+                this.fileName = fileName;
+                this.size = fileSize( folder1.resolve( fileName ) ) + fileSize( folder2.resolve( fileName ) );
+            }
+
+            long size() {
+                return size;
+            }
 
+            @Override
+            public FileTask call() {
+                console = ConsoleCapture.start();
+                try {
+                    runDiff( folder1, folder2, report, fileName );
+                }
+                catch( final Exception | Error e ) { // errors too (out of memory, stack overflow on a huge schema): other files still get compared
+                    System.out.println( "Error, failed to compare " + fileName + ": " + e );
+                    e.printStackTrace();
+                    failure = e;
+                }
+                finally {
+                    console.stop();
+                }
+                return this;
+            }
+        }
+
+        /** @return 0 if size is not known (file will fail to open later on) */
+        private static long fileSize( final Path file ) {
+            try {
+                return Files.size( file );
+            }
+            catch( final IOException e ) {
+                return 0L;
+            }
         }
 
         private void writeResources( final File report ) throws Exception {
@@ -170,11 +684,26 @@ public class Main {
         }
 
         void printFileComparisonHeader( final HtmlContentOutput contentOutput, final Path f1, final Path f2 ) {
+            printFileComparisonHeader( contentOutput, Collections.singletonList( fileComparisonHeader( f1, f2 ) ) );
+        }
+
+        void printFileComparisonHeader( final HtmlContentOutput contentOutput, final List<String> lines ) {
             contentOutput.startFileHeader();
-            contentOutput.write( "comparing: " + f1 + " with " + f2 );
+            for( final String line : lines ) {
+                contentOutput.write( line );
+            }
             contentOutput.endFileHeader();
         }
 
+        static String fileComparisonHeader( final Path f1, final Path f2 ) {
+            return "comparing: " + displayName( f1 ) + " with " + displayName( f2 );
+        }
+
+        /** archive entries are named together with the archive (jar:file:...!/entry) */
+        static String displayName( final Path path ) {
+            return path.getFileSystem() == FileSystems.getDefault() ? path.toString() : path.toUri().toString();
+        }
+
         List<String> collectLines( final Path listFilesToCompare ) {
             try( final BufferedReader br = Files.newBufferedReader( listFilesToCompare ) ) {
                 return br.lines().collect( Collectors.toList() );
@@ -184,15 +713,23 @@ public class Main {
             }
         }
 
-        void runDiff( final Reader file1, final Reader file2, final HtmlContentOutput output ) {
+        /** @return finished report, with count of differences found */
+        XmlSchemaDiffReport runDiff( final SchemaBytes file1, final SchemaBytes file2, final HtmlContentOutput output ) {
 
             try {
 
                 final DocumentBuilder docBuilder = XmlDomUtils.documentBuilder();
-                final Document controlDoc = docBuilder.parse( new InputSource( file1 ) );
-                final Document testDoc = docBuilder.parse( new InputSource( file2 ) );
+                final Document controlDoc = docBuilder.parse( file1.stream(), file1.systemId() );
+                final Document testDoc = docBuilder.parse( file2.stream(), file2.systemId() );
 
-                new XmlSchemaDiffReport( output ).runDiff( controlDoc, testDoc );
+                final XmlSchemaDiffReport report = new XmlSchemaDiffReport( output ).withMaxDifferences( maxDifferences ).withIgnoreRules( ignoreRules ).withRenderers( renderers );
+                if( componentPool != null ) {
+                    report.withParallelism( componentPool );
+                }
+                budgets.forEach( report::withBudget );
+                report.withRenderRunner( renderRunner );
+                report.runDiff( controlDoc, testDoc );
+                return report;
             }
             catch( final ParserConfigurationException | SAXException | IOException e ) {
                 throw new RuntimeException( "Failed to parse: ", e );
@@ -0,0 +1,301 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package io.github.valters.xsdiff.app;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+
+import io.github.valters.xsdiff.report.XmlSchemaDiffReport;
+
+/**
+ * On-disk cache of comparison results: when neither file of the pair has changed since an earlier run (and the tool build
+ * is the same), the earlier report is copied instead of comparing again.
+ * <p>
+ * Entry is keyed by SHA-256 of both file contents, the report header and options, and the tool build: checksum of the code
+ * (jar, or class files when running from classes folders), so that any change to report code invalidates the entries, even if
+ * version stays the same. Entry holds the rendered report and a short change summary. Least recently used entries (by file
+ * modification time, touched on every hit) are evicted when the cache grows over its size limit.
+ */
+class ReportCache {
+
+    /** bump when layout of cache entries changes */
+    private static final String FORMAT = "xsdiff-report-cache-1";
+
+    private static final String REPORT_SUFFIX = ".html";
+    private static final String SUMMARY_SUFFIX = ".summary";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final String SUMMARY_DIFFERENCES = "differences";
+
+    /** when evicting, shrink to this part of the limit, so that eviction does not run on every store */
+    private static final double EVICT_TO = 0.8;
+
+    private final Path folder;
+    private final long maxBytes;
+    private final String toolBuild;
+
+    /** bytes of complete entries in cache folder, counted on first store and kept up to date after that; -1 until counted */
+    private long totalBytes = -1;
+
+    ReportCache( final Path folder, final long maxBytes ) {
+        this( folder, maxBytes, toolBuild() );
+    }
+
+    /** @param toolBuild checksum of the tool code */
+    ReportCache( final Path folder, final long maxBytes, final String toolBuild ) {
+        this.folder = folder;
+        this.maxBytes = maxBytes;
+        this.toolBuild = toolBuild;
+    }
+
+    /** checksum of the code of this tool and of the report library; random (nothing is reused) if code can not be read */
+    private static String toolBuild() {
+        try {
+            final Hasher hasher = Hashing.sha256().newHasher();
+            final Set<Path> locations = new TreeSet<>();
+            for( final Class<?> code : new Class<?>[] { ReportCache.class, XmlSchemaDiffReport.class } ) {
+                locations.add( Paths.get( code.getProtectionDomain().getCodeSource().getLocation().toURI() ) );
+            }
+            for( final Path location : locations ) {
+                if( Files.isDirectory( location ) ) {
+                    hashClassFiles( location, hasher );
+                }
+                else {
+                    hasher.putBytes( MoreFiles.asByteSource( location ).hash( Hashing.sha256() ).asBytes() );
+                }
+            }
+            return hasher.hash().toString();
+        }
+        catch( final IOException | URISyntaxException | RuntimeException e ) {
+            System.out.println( "Warning, failed to read tool code, cached reports will not be reused: " + e );
+            return UUID.randomUUID().toString();
+        }
+    }
+
+    private static void hashClassFiles( final Path folder, final Hasher hasher ) throws IOException {
+        final List<Path> files;
+        try( final Stream<Path> walk = Files.walk( folder ) ) {
+            files = walk.filter( Files::isRegularFile ).sorted().collect( Collectors.toList() );
+        }
+        for( final Path file : files ) {
+            hasher.putString( folder.relativize( file ).toString(), StandardCharsets.UTF_8 ).putByte( (byte) 0 );
+            hasher.putBytes( Files.readAllBytes( file ) );
+        }
+    }
+
+    /** @return cache key for comparison of the two files; context is anything else the report depends on (its header, report options) */
+    String key( final Path file1, final Path file2, final String context ) throws IOException {
+        final Hasher hasher = Hashing.sha256().newHasher()
+                .putString( FORMAT, StandardCharsets.UTF_8 ).putByte( (byte) 0 )
+                .putString( toolBuild, StandardCharsets.UTF_8 ).putByte( (byte) 0 )
+                .putString( context, StandardCharsets.UTF_8 ).putByte( (byte) 0 );
+        hasher.putBytes( MoreFiles.asByteSource( file1 ).hash( Hashing.sha256() ).asBytes() );
+        hasher.putBytes( MoreFiles.asByteSource( file2 ).hash( Hashing.sha256() ).asBytes() );
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Copy cached report to the given file.
+     * @return how many differences the cached report has, or -1 if there is no entry for the key
+     */
+    int restore( final String key, final Path report ) {
+        final Path cachedReport = folder.resolve( key + REPORT_SUFFIX );
+        final Path cachedSummary = folder.resolve( key + SUMMARY_SUFFIX );
+        try {
+            if( ! Files.isRegularFile( cachedReport ) || ! Files.isRegularFile( cachedSummary ) ) {
+                return -1;
+            }
+            final Properties summary = new Properties();
+            try( final Reader in = Files.newBufferedReader( cachedSummary, StandardCharsets.UTF_8 ) ) {
+                summary.load( in );
+            }
+            final int differences = Integer.parseInt( summary.getProperty( SUMMARY_DIFFERENCES, "-1" ) );
+            if( differences < 0 ) {
+                return -1;
+            }
+
+            Files.copy( cachedReport, report, StandardCopyOption.REPLACE_EXISTING );
+
+            final FileTime now = FileTime.fromMillis( System.currentTimeMillis() ); // recently used
+            Files.setLastModifiedTime( cachedReport, now );
+            Files.setLastModifiedTime( cachedSummary, now );
+            return differences;
+        }
+        catch( final IOException | RuntimeException e ) {
+            System.out.println( "Warning, failed to read cached report " + cachedReport + ": " + e );
+            return -1;
+        }
+    }
+
+    /** remember the report; failure to store is not fatal */
+    void store( final String key, final Path report, final int differences ) {
+        Path tempReport = null;
+        Path tempSummary = null;
+        try {
+            Files.createDirectories( folder );
+
+            tempReport = Files.createTempFile( folder, key, TEMP_SUFFIX );
+            Files.copy( report, tempReport, StandardCopyOption.REPLACE_EXISTING );
+
+            tempSummary = Files.createTempFile( folder, key, TEMP_SUFFIX );
+            final Properties summary = new Properties();
+            summary.setProperty( SUMMARY_DIFFERENCES, String.valueOf( differences ) );
+            try( final Writer out = Files.newBufferedWriter( tempSummary, StandardCharsets.UTF_8 ) ) {
+                summary.store( out, FORMAT );
+            }
+
+            // report first: entry only counts when summary is present
+            final long added = replace( tempReport, folder.resolve( key + REPORT_SUFFIX ) ) + replace( tempSummary, folder.resolve( key + SUMMARY_SUFFIX ) );
+
+            added( added );
+        }
+        catch( final IOException | RuntimeException e ) {
+            System.out.println( "Warning, failed to store report in cache " + folder + ": " + e );
+        }
+        finally {
+            deleteTemp( tempReport );
+            deleteTemp( tempSummary );
+        }
+    }
+
+    /** temp file is gone already when it was moved into place */
+    private static void deleteTemp( final Path temp ) {
+        if( temp == null ) {
+            return;
+        }
+        try {
+            Files.deleteIfExists( temp );
+        }
+        catch( final IOException e ) {
+            System.out.println( "Warning, failed to delete temporary file " + temp + ": " + e );
+        }
+    }
+
+    /** @return how many bytes the cache grew by */
+    private static long replace( final Path from, final Path to ) throws IOException {
+        final long size = Files.size( from );
+        final long replaced = Files.isRegularFile( to ) ? Files.size( to ) : 0L;
+        move( from, to );
+        return size - replaced;
+    }
+
+    private static void move( final Path from, final Path to ) throws IOException {
+        try {
+            Files.move( from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch( final AtomicMoveNotSupportedException e ) {
+            Files.move( from, to, StandardCopyOption.REPLACE_EXISTING );
+        }
+    }
+
+    /** folder is only listed when first entry is stored, and again when it grows over its limit */
+    private synchronized void added( final long bytes ) throws IOException {
+        if( totalBytes < 0 ) {
+            evict();
+        }
+        else {
+            totalBytes += bytes;
+            if( totalBytes > maxBytes ) {
+                evict();
+            }
+        }
+    }
+
+    /**
+     * Drop least recently used entries until cache fits in its limit. Only complete entries (report and summary) are counted
+     * and evicted, both files together: temporary files and half-moved entries of a store still in progress are left alone.
+     */
+    synchronized void evict() throws IOException {
+        final List<Entry> entries = new ArrayList<>();
+        long total = 0;
+        try( final DirectoryStream<Path> dir = Files.newDirectoryStream( folder, "*" + SUMMARY_SUFFIX ) ) {
+            for( final Path summary : dir ) {
+                final String name = summary.getFileName().toString();
+                final Path report = folder.resolve( name.substring( 0, name.length() - SUMMARY_SUFFIX.length() ) + REPORT_SUFFIX );
+                if( Files.isRegularFile( summary ) && Files.isRegularFile( report ) ) {
+                    final Entry entry = new Entry( report, summary );
+                    entries.add( entry );
+                    total += entry.size;
+                }
+            }
+        }
+        if( total <= maxBytes ) {
+            totalBytes = total;
+            return;
+        }
+
+        entries.sort( Comparator.comparing( entry -> entry.lastModified ) );
+        final long target = (long) ( maxBytes * EVICT_TO );
+        for( final Entry entry : entries ) {
+            if( total <= target ) {
+                break;
+            }
+            Files.deleteIfExists( entry.summary ); // summary first: without it, report is no longer an entry
+            Files.deleteIfExists( entry.report );
+            total -= entry.size;
+        }
+        totalBytes = total;
+    }
+
+    /** report and summary files of one cached comparison */
+    private static class Entry {
+
+        private final Path report;
+        private final Path summary;
+        private final long size;
+        private final FileTime lastModified;
+
+        Entry( final Path report, final Path summary ) throws IOException {
+            this.report = report;
+            this.summary = summary;
+            this.size = Files.size( report ) + Files.size( summary );
+            final FileTime reportTime = lastModified( report );
+            final FileTime summaryTime = lastModified( summary );
+            this.lastModified = reportTime.compareTo( summaryTime ) > 0 ? reportTime : summaryTime;
+        }
+    }
+
+    private static FileTime lastModified( final Path file ) {
+        try {
+            return Files.getLastModifiedTime( file );
+        }
+        catch( final IOException e ) {
+            return FileTime.fromMillis( 0L ); // gone already: evict first
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package io.github.valters.xsdiff.app;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Schema file content as bytes, for the parser to read as an InputStream (so that the declared encoding is honored).
+ * <p>
+ * The file is read completely when opened, so no file handle stays open while the document is being parsed and compared.
+ * Large files on the local disk are memory-mapped; other files (and archive entries) are read into a buffer taken from a small
+ * pool, which is given back on {@link #close()}.
+ */
+final class SchemaBytes implements AutoCloseable {
+
+    /** files of at least this size are memory-mapped instead of copied */
+    static final long MAP_THRESHOLD = 4L * 1024 * 1024;
+
+    private static final int INITIAL_BUFFER = 64 * 1024;
+
+    /** idle buffers; at most two files per compared pair are open on each thread */
+    private static final int MAX_POOLED = 2 * Runtime.getRuntime().availableProcessors();
+    private static final Deque<byte[]> POOL = new ArrayDeque<>();
+
+    private final Path file;
+    private final InputStream stream;
+    private byte[] buffer;
+
+    private SchemaBytes( final Path file, final InputStream stream, final byte[] buffer ) {
+        this.file = file;
+        this.stream = stream;
+        this.buffer = buffer;
+    }
+
+    /** read file content */
+    static SchemaBytes open( final Path file ) throws IOException {
+        if( file.getFileSystem() == FileSystems.getDefault() && Files.size( file ) >= MAP_THRESHOLD ) {
+            return mapped( file );
+        }
+        return buffered( file );
+    }
+
+    private static SchemaBytes mapped( final Path file ) throws IOException {
+        try( final FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) ) {
+            // mapping stays valid after the channel is closed
+            final ByteBuffer bytes = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+            return new SchemaBytes( file, new ByteBufferInputStream( bytes ), null );
+        }
+    }
+
+    private static SchemaBytes buffered( final Path file ) throws IOException {
+        byte[] buffer = borrow();
+        int length = 0;
+        try( final InputStream in = Files.newInputStream( file ) ) {
+            int read;
+            while( ( read = in.read( buffer, length, buffer.length - length ) ) >= 0 ) {
+                length += read;
+                if( length == buffer.length ) {
+                    buffer = Arrays.copyOf( buffer, buffer.length * 2 );
+                }
+            }
+        }
+        catch( final IOException | RuntimeException e ) {
+            giveBack( buffer );
+            throw e;
+        }
+        return new SchemaBytes( file, new ByteArrayInputStream( buffer, 0, length ), buffer );
+    }
+
+    private static byte[] borrow() {
+        synchronized( POOL ) {
+            final byte[] buffer = POOL.poll();
+            return buffer != null ? buffer : new byte[INITIAL_BUFFER];
+        }
+    }
+
+    /** only buffers of initial size are kept: a buffer grown for one large file is left to the garbage collector */
+    private static void giveBack( final byte[] buffer ) {
+        if( buffer.length != INITIAL_BUFFER ) {
+            return;
+        }
+        synchronized( POOL ) {
+            if( POOL.size() < MAX_POOLED ) {
+                POOL.push( buffer );
+            }
+        }
+    }
+
+    /** @return how many idle buffers the pool holds */
+    static int pooledBuffers() {
+        synchronized( POOL ) {
+            return POOL.size();
+        }
+    }
+
+    /** @return file content, valid until closed */
+    InputStream stream() {
+        return stream;
+    }
+
+    /** parser resolves relative references (and names the file in errors) by this id */
+    String systemId() {
+        return file.toUri().toString();
+    }
+
+    /** give buffer back to the pool */
+    @Override
+    public void close() {
+        if( buffer != null ) {
+            giveBack( buffer );
+            buffer = null;
+        }
+    }
+
+    /** reads a (memory-mapped) buffer */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer bytes;
+
+        ByteBufferInputStream( final ByteBuffer bytes ) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read() {
+            return bytes.hasRemaining() ? bytes.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read( final byte[] b, final int off, final int len ) {
+            if( len == 0 ) {
+                return 0;
+            }
+            if( ! bytes.hasRemaining() ) {
+                return -1;
+            }
+            final int count = Math.min( len, bytes.remaining() );
+            bytes.get( b, off, count );
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return bytes.remaining();
+        }
+    }
+}
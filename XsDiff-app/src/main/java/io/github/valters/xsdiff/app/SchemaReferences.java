@@ -0,0 +1,166 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package io.github.valters.xsdiff.app;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Schemas that files of one compared folder pull in with xs:include, xs:import, xs:redefine or xs:override.
+ * <p>
+ * Only the leading part of each schema is read (these elements must come before any schema component), and the result is
+ * remembered, so every file is scanned at most once per run. References that point outside the folder (or to a URL) are
+ * ignored.
+ */
+class SchemaReferences {
+
+    private static final Set<String> REFERENCE_ELEMENTS = ImmutableSet.of( "include", "import", "redefine", "override" );
+    private static final String ANNOTATION = "annotation";
+    private static final String SCHEMA_LOCATION = "schemaLocation";
+
+    private final Path folder;
+    private final XMLInputFactory inputFactory;
+
+    /** file name to names of referenced files */
+    private final Map<String, List<String>> references = new ConcurrentHashMap<>();
+
+    SchemaReferences( final Path folder ) {
+        this.folder = folder.toAbsolutePath().normalize();
+        this.inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty( XMLInputFactory.SUPPORT_DTD, false );
+        inputFactory.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false );
+    }
+
+    /** @return file name, relative to the folder, in the same form as names returned by {@link #of(String)} */
+    String name( final String fileName ) {
+        return folder.relativize( folder.resolve( fileName ).normalize() ).toString();
+    }
+
+    /** @return files referenced directly by the given file; empty if file does not exist here */
+    List<String> of( final String fileName ) {
+        return references.computeIfAbsent( name( fileName ), this::scan );
+    }
+
+    /** @return files referenced by the given files, directly or through other references; without the given files themselves */
+    Set<String> closure( final Collection<String> fileNames ) {
+        final Set<String> seen = new LinkedHashSet<>();
+        final Deque<String> pending = new ArrayDeque<>();
+        for( final String fileName : fileNames ) {
+            final String name = name( fileName );
+            seen.add( name );
+            pending.add( name );
+        }
+
+        final Set<String> found = new LinkedHashSet<>();
+        while( ! pending.isEmpty() ) {
+            for( final String reference : of( pending.poll() ) ) {
+                if( seen.add( reference ) ) {
+                    found.add( reference );
+                    pending.add( reference );
+                }
+            }
+        }
+        return found;
+    }
+
+    private List<String> scan( final String name ) {
+        final Path file = folder.resolve( name );
+        if( ! Files.isRegularFile( file ) ) {
+            return Collections.emptyList();
+        }
+
+        final List<String> found = new ArrayList<>();
+        try( final InputStream in = Files.newInputStream( file ) ) {
+            final XMLStreamReader reader;
+            synchronized( inputFactory ) { // StAX factory is not specified to be thread safe
+                reader = inputFactory.createXMLStreamReader( in );
+            }
+            try {
+                int depth = 0;
+                while( reader.hasNext() ) {
+                    final int event = reader.next();
+                    if( event == XMLStreamConstants.END_ELEMENT ) {
+                        depth--;
+                    }
+                    else if( event == XMLStreamConstants.START_ELEMENT ) {
+                        depth++;
+                        if( depth == 2 ) { // child of xs:schema
+                            final String element = reader.getLocalName();
+                            if( ! XMLConstants.W3C_XML_SCHEMA_NS_URI.equals( reader.getNamespaceURI() )
+                                    || ! ( REFERENCE_ELEMENTS.contains( element ) || ANNOTATION.equals( element ) ) ) {
+                                break; // schema components follow, no more references
+                            }
+                            final String location = reader.getAttributeValue( null, SCHEMA_LOCATION );
+                            final String reference = resolve( file, location );
+                            if( reference != null && ! found.contains( reference ) ) {
+                                found.add( reference );
+                            }
+                        }
+                    }
+                }
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch( final IOException | XMLStreamException e ) {
+            System.out.println( "Warning, failed to read schema references of " + file + ": " + e );
+        }
+        return found;
+    }
+
+    /** @return referenced file name relative to the folder, or null if it is not a file inside the folder */
+    private String resolve( final Path file, final String location ) {
+        if( location == null || location.isEmpty() ) {
+            return null;
+        }
+        try {
+            final URI uri = new URI( location );
+            if( uri.isAbsolute() || uri.getPath() == null || uri.getPath().startsWith( "/" ) ) {
+                return null;
+            }
+            final Path target = file.getParent().resolve( uri.getPath() ).normalize();
+            if( ! target.startsWith( folder ) || ! Files.isRegularFile( target ) ) {
+                return null;
+            }
+            return folder.relativize( target ).toString();
+        }
+        catch( final URISyntaxException | RuntimeException e ) {
+            return null;
+        }
+    }
+}
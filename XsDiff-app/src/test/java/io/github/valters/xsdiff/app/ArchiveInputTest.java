@@ -0,0 +1,99 @@
+package io.github.valters.xsdiff.app;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ArchiveInputTest {
+
+    private static final String SCHEMA_START = "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>";
+    private static final String SCHEMA_END = "</xs:schema>";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void shouldRecognizeArchives() throws Exception {
+        assertThat( Main.App.isArchive( zip( "a.jar", new LinkedHashMap<>() ) ), is( true ) );
+        assertThat( Main.App.isArchive( zip( "a.ZIP", new LinkedHashMap<>() ) ), is( true ) );
+        assertThat( Main.App.isArchive( temp.newFile( "a.xsd" ).toPath() ), is( false ) );
+        assertThat( Main.App.isArchive( temp.getRoot().toPath().resolve( "missing.jar" ) ), is( false ) );
+    }
+
+    @Test
+    public void shouldCompareAllSchemasWithoutListing() throws Exception {
+        final Map<String, String> entries = new LinkedHashMap<>();
+        entries.put( "sub/b.xsd", schema( "b" ) );
+        entries.put( "a.xsd", schema( "a" ) );
+        entries.put( "readme.txt", "not a schema" );
+        final Path archive1 = zip( "1.jar", entries );
+        final Path archive2 = zip( "2.jar", entries );
+
+        final List<String> compared = new ArrayList<>();
+        new Main.App().runArchiveDiff( archive1, archive2, ( folder1, folder2, fileList ) -> {
+            compared.addAll( fileList );
+            assertThat( new String( Files.readAllBytes( folder1.resolve( "sub/b.xsd" ) ), StandardCharsets.UTF_8 ), is( schema( "b" ) ) );
+        } );
+        assertThat( compared, contains( "a.xsd", "sub/b.xsd" ) );
+    }
+
+    @Test
+    public void shouldUseListingOfSecondArchive() throws Exception {
+        final Map<String, String> entries = new LinkedHashMap<>();
+        entries.put( "a.xsd", schema( "a" ) );
+        entries.put( "b.xsd", schema( "b" ) );
+        entries.put( "schema.lst", "b.xsd\n" );
+
+        final List<String> compared = new ArrayList<>();
+        new Main.App().runArchiveDiff( zip( "1.zip", entries ), zip( "2.zip", entries ), ( folder1, folder2, fileList ) -> compared.addAll( fileList ) );
+        assertThat( compared, contains( "b.xsd" ) );
+    }
+
+    @Test
+    public void shouldWriteReportsForArchiveAgainstFolder() throws Exception {
+        final Path folder1 = temp.newFolder( "old" ).toPath();
+        Files.write( folder1.resolve( "a.xsd" ), schema( "a" ).getBytes( StandardCharsets.UTF_8 ) );
+
+        final Map<String, String> entries = new LinkedHashMap<>();
+        entries.put( "a.xsd", schema( "a2" ) );
+        final Path archive2 = zip( "new.jar", entries );
+        final Path report = temp.getRoot().toPath().resolve( "report" );
+
+        final Main.App app = new Main.App();
+        app.run( app.parseOptions( new String[] { "--no-cache", folder1.toString(), archive2.toString(), report.toString() } ) );
+
+        assertThat( Files.isRegularFile( report.resolve( "diff-report-a.xsd.html" ) ), is( true ) );
+    }
+
+    private static String schema( final String elementName ) {
+        return SCHEMA_START + "<xs:element name='" + elementName + "' type='xs:string'/>" + SCHEMA_END;
+    }
+
+    private Path zip( final String name, final Map<String, String> entries ) throws Exception {
+        final Path archive = temp.getRoot().toPath().resolve( name );
+        try( final OutputStream out = Files.newOutputStream( archive );
+             final ZipOutputStream zip = new ZipOutputStream( out ) ) {
+            for( final Map.Entry<String, String> entry : entries.entrySet() ) {
+                zip.putNextEntry( new ZipEntry( entry.getKey() ) );
+                zip.write( entry.getValue().getBytes( StandardCharsets.UTF_8 ) );
+                zip.closeEntry();
+            }
+        }
+        return archive;
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.valters.xsdiff.app;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConsoleCaptureTest {
+
+    private PrintStream originalOut;
+    private PrintStream originalErr;
+
+    private final ByteArrayOutputStream console = new ByteArrayOutputStream();
+    private PrintStream consoleOut;
+
+    @Before
+    public void setUp() {
+        originalOut = System.out;
+        originalErr = System.err;
+        consoleOut = new PrintStream( console, true );
+        System.setOut( consoleOut );
+        System.setErr( consoleOut );
+        ConsoleCapture.install();
+    }
+
+    @After
+    public void tearDown() {
+        ConsoleCapture.uninstall();
+        System.setOut( originalOut );
+        System.setErr( originalErr );
+    }
+
+    @Test
+    public void shouldPrintCapturedOutputOnlyOnReplay() throws Exception {
+        final ConsoleCapture[] captured = new ConsoleCapture[1];
+        final Thread worker = new Thread( () -> {
+            captured[0] = ConsoleCapture.start();
+            System.out.println( "worker" );
+            captured[0].stop();
+        } );
+        worker.start();
+        worker.join();
+
+        System.out.println( "direct" );
+        assertThat( console(), is( "direct\n" ) );
+
+        captured[0].replay();
+        assertThat( console(), is( "direct\nworker\n" ) );
+    }
+
+    @Test
+    public void shouldCarryCaptureToOtherThread() throws Exception {
+        final ConsoleCapture capture = ConsoleCapture.start();
+        final Thread helper = new Thread( ConsoleCapture.propagate( () -> System.out.println( "helper" ) ) );
+        capture.stop();
+        helper.start();
+        helper.join();
+
+        assertThat( console(), is( "" ) );
+        capture.replay();
+        assertThat( console(), is( "helper\n" ) );
+    }
+
+    @Test
+    public void shouldRestoreConsoleStreams() {
+        ConsoleCapture.uninstall();
+        assertThat( System.out, sameInstance( consoleOut ) );
+        assertThat( System.err, sameInstance( consoleOut ) );
+    }
+
+    private String console() {
+        return new String( console.toByteArray(), StandardCharsets.UTF_8 ).replace( System.lineSeparator(), "\n" );
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.valters.xsdiff.app;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IdenticalPairCheckTest {
+
+    private static final String SCHEMA = "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>"
+            + "<xs:element name='e' type='xs:string' minOccurs='0'><xs:annotation><xs:documentation>text</xs:documentation></xs:annotation></xs:element>"
+            + "</xs:schema>";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void shouldFindSameBytesIdentical() throws Exception {
+        assertThat( identical( SCHEMA, SCHEMA ), is( true ) );
+    }
+
+    @Test
+    public void shouldIgnoreWhitespaceAndComments() throws Exception {
+        final String formatted = SCHEMA.replace( "<xs:element", "\n  <!-- element -->\n  <xs:element" )
+                .replace( "<xs:documentation>text", "<xs:documentation>\n    text  " );
+        assertThat( identical( SCHEMA, formatted ), is( true ) );
+    }
+
+    @Test
+    public void shouldIgnoreAttributeOrder() throws Exception {
+        assertThat( identical( SCHEMA, SCHEMA.replace( "name='e' type='xs:string' minOccurs='0'", "minOccurs='0' type='xs:string' name='e'" ) ), is( true ) );
+    }
+
+    @Test
+    public void shouldDetectNamespaceChanges() throws Exception {
+        assertThat( identical( SCHEMA, SCHEMA.replace( "xs:", "xsd:" ).replace( "xmlns:xs=", "xmlns:xsd=" ) ), is( false ) );
+        assertThat( identical( SCHEMA, SCHEMA.replace( "2001/XMLSchema", "2001/XMLSchema-other" ) ), is( false ) );
+    }
+
+    @Test
+    public void shouldDetectDeclarationChanges() throws Exception {
+        final String declared = "<?xml version='1.0' encoding='UTF-8'?>" + SCHEMA;
+        assertThat( identical( SCHEMA, "<!DOCTYPE xs:schema [ <!ENTITY e 'e'> ]>" + SCHEMA ), is( false ) );
+        assertThat( identical( declared, declared.replace( "UTF-8", "ISO-8859-1" ) ), is( false ) );
+        assertThat( identical( declared, declared.replace( "?>", " standalone='yes'?>" ) ), is( false ) );
+        assertThat( identical( declared.replace( "?>", " standalone='no'?>" ), declared.replace( "?>", " standalone='yes'?>" ) ), is( false ) );
+    }
+
+    @Test
+    public void shouldDetectTextAndAttributeChanges() throws Exception {
+        assertThat( identical( SCHEMA, SCHEMA.replace( ">text<", ">other text<" ) ), is( false ) );
+        assertThat( identical( SCHEMA, SCHEMA.replace( "minOccurs='0'", "minOccurs='1'" ) ), is( false ) );
+        assertThat( identical( SCHEMA, SCHEMA.replace( " minOccurs='0'", "" ) ), is( false ) );
+    }
+
+    private boolean identical( final String content1, final String content2 ) throws Exception {
+        return IdenticalPairCheck.identical( write( content1 ), write( content2 ) );
+    }
+
+    private Path write( final String content ) throws Exception {
+        final Path file = temp.newFile().toPath();
+        Files.write( file, content.getBytes( StandardCharsets.UTF_8 ) );
+        return file;
+    }
+}
@@ -0,0 +1,123 @@
+package io.github.valters.xsdiff.app;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReportCacheTest {
+
+    private static final String TOOL_BUILD = "build-1";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private Path cacheFolder;
+    private Path file1;
+    private Path file2;
+    private Path report;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheFolder = temp.getRoot().toPath().resolve( "cache" );
+        file1 = write( "a.xsd", "<schema/>" );
+        file2 = write( "b.xsd", "<schema><element/></schema>" );
+        report = write( "report.html", "<html>report</html>" );
+    }
+
+    @Test
+    public void shouldChangeKeyWithOptionsContentsAndToolBuild() throws Exception {
+        final ReportCache cache = new ReportCache( cacheFolder, 1024 );
+        final ReportCache fixture = new ReportCache( cacheFolder, 1024, TOOL_BUILD );
+        final String key = fixture.key( file1, file2, "options" );
+
+        assertThat( fixture.key( file1, file2, "options" ), is( key ) );
+        assertThat( fixture.key( file1, file2, "other options" ), not( key ) );
+        assertThat( fixture.key( file2, file1, "options" ), not( key ) );
+        assertThat( new ReportCache( cacheFolder, 1024, "build-2" ).key( file1, file2, "options" ), not( key ) );
+        assertThat( cache.key( file1, file2, "options" ), not( key ) );
+
+        Files.write( file2, "<schema><element name='e'/></schema>".getBytes( StandardCharsets.UTF_8 ) );
+        assertThat( fixture.key( file1, file2, "options" ), not( key ) );
+    }
+
+    @Test
+    public void shouldRestoreStoredReport() throws Exception {
+        final ReportCache fixture = new ReportCache( cacheFolder, 1024 * 1024, TOOL_BUILD );
+        final String key = fixture.key( file1, file2, "" );
+        final Path restored = temp.getRoot().toPath().resolve( "restored.html" );
+
+        assertThat( fixture.restore( key, restored ), is( -1 ) );
+
+        fixture.store( key, report, 7 );
+        assertThat( fixture.restore( key, restored ), is( 7 ) );
+        assertThat( Files.readAllBytes( restored ), is( Files.readAllBytes( report ) ) );
+        assertThat( tempFiles(), is( 0L ) );
+    }
+
+    @Test
+    public void shouldMissWithoutSummary() throws Exception {
+        final ReportCache fixture = new ReportCache( cacheFolder, 1024 * 1024, TOOL_BUILD );
+        final String key = fixture.key( file1, file2, "" );
+        fixture.store( key, report, 3 );
+
+        Files.delete( cacheFolder.resolve( key + ".summary" ) );
+        assertThat( fixture.restore( key, temp.getRoot().toPath().resolve( "restored.html" ) ), is( -1 ) );
+    }
+
+    @Test
+    public void shouldEvictOldestEntriesTogether() throws Exception {
+        new ReportCache( cacheFolder, Long.MAX_VALUE, TOOL_BUILD ).store( "sample", report, 0 );
+        final long entrySize = entryBytes();
+        Files.delete( cacheFolder.resolve( "sample.html" ) );
+        Files.delete( cacheFolder.resolve( "sample.summary" ) );
+
+        final ReportCache fixture = new ReportCache( cacheFolder, 3 * entrySize, TOOL_BUILD );
+        final Path inFlight = Files.createTempFile( cacheFolder, "other", ".tmp" );
+
+        for( int i = 0; i < 6; i++ ) {
+            fixture.store( "key" + i, report, i );
+            final FileTime time = FileTime.fromMillis( 1_000_000L * ( i + 1 ) );
+            Files.setLastModifiedTime( cacheFolder.resolve( "key" + i + ".html" ), time );
+            Files.setLastModifiedTime( cacheFolder.resolve( "key" + i + ".summary" ), time );
+        }
+        fixture.evict();
+
+        assertThat( entryBytes(), lessThanOrEqualTo( 3 * entrySize ) );
+        assertThat( Files.exists( cacheFolder.resolve( "key0.html" ) ), is( false ) );
+        assertThat( Files.exists( cacheFolder.resolve( "key0.summary" ) ), is( false ) );
+        assertThat( Files.exists( cacheFolder.resolve( "key5.html" ) ), is( true ) );
+        assertThat( Files.exists( cacheFolder.resolve( "key5.summary" ) ), is( true ) );
+        assertThat( Files.exists( inFlight ), is( true ) );
+        for( int i = 0; i < 6; i++ ) {
+            assertThat( Files.exists( cacheFolder.resolve( "key" + i + ".html" ) ), is( Files.exists( cacheFolder.resolve( "key" + i + ".summary" ) ) ) );
+        }
+    }
+
+    private Path write( final String name, final String content ) throws Exception {
+        return Files.write( temp.getRoot().toPath().resolve( name ), content.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    private long entryBytes() throws Exception {
+        try( final Stream<Path> files = Files.list( cacheFolder ) ) {
+            return files.filter( file -> ! file.toString().endsWith( ".tmp" ) ).mapToLong( file -> file.toFile().length() ).sum();
+        }
+    }
+
+    private long tempFiles() throws Exception {
+        try( final Stream<Path> files = Files.list( cacheFolder ) ) {
+            return files.filter( file -> file.toString().endsWith( ".tmp" ) ).count();
+        }
+    }
+}
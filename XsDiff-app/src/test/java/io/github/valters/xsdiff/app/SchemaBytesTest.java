@@ -0,0 +1,70 @@
+package io.github.valters.xsdiff.app;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.io.ByteStreams;
+
+public class SchemaBytesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldReadSmallFileIntoPooledBuffer() throws Exception {
+        final byte[] content = content( 1000 );
+        final Path file = write( content );
+
+        try( final SchemaBytes bytes = SchemaBytes.open( file ) ) {
+            assertThat( ByteStreams.toByteArray( bytes.stream() ), is( content ) );
+            assertThat( bytes.systemId(), is( file.toUri().toString() ) );
+        }
+        assertThat( SchemaBytes.pooledBuffers(), greaterThanOrEqualTo( 1 ) );
+    }
+
+    @Test
+    public void shouldNotPoolGrownBuffer() throws Exception {
+        final byte[] content = content( 300 * 1024 );
+        final Path file = write( content );
+
+        final int pooled = SchemaBytes.pooledBuffers();
+        try( final SchemaBytes bytes = SchemaBytes.open( file ) ) {
+            assertThat( ByteStreams.toByteArray( bytes.stream() ), is( content ) );
+        }
+        assertThat( SchemaBytes.pooledBuffers(), lessThanOrEqualTo( pooled ) );
+    }
+
+    @Test
+    public void shouldMapLargeFile() throws Exception {
+        final byte[] content = content( (int) SchemaBytes.MAP_THRESHOLD + 1 );
+        final Path file = write( content );
+
+        final int pooled = SchemaBytes.pooledBuffers();
+        try( final SchemaBytes bytes = SchemaBytes.open( file ) ) {
+            assertThat( ByteStreams.toByteArray( bytes.stream() ), is( content ) );
+        }
+        assertThat( SchemaBytes.pooledBuffers(), is( pooled ) );
+    }
+
+    private Path write( final byte[] content ) throws Exception {
+        final Path file = folder.newFile().toPath();
+        Files.write( file, content );
+        return file;
+    }
+
+    private static byte[] content( final int length ) {
+        final byte[] content = new byte[length];
+        new Random( length ).nextBytes( content );
+        return content;
+    }
+}
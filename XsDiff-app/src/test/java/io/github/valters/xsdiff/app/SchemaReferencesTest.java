@@ -0,0 +1,87 @@
+package io.github.valters.xsdiff.app;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SchemaReferencesTest {
+
+    private static final String SCHEMA_START = "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>";
+    private static final String SCHEMA_END = "</xs:schema>";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private Path folder;
+
+    @Before
+    public void setUp() throws Exception {
+        folder = temp.newFolder( "schemas" ).toPath();
+        write( "main.xsd", "<xs:annotation><xs:documentation>main</xs:documentation></xs:annotation>"
+                + "<xs:include schemaLocation='common/types.xsd'/>"
+                + "<xs:import namespace='urn:x' schemaLocation='http://example.com/x.xsd'/>"
+                + "<xs:import namespace='urn:y' schemaLocation='../outside.xsd'/>"
+                + "<xs:redefine schemaLocation='missing.xsd'/>"
+                + "<xs:element name='m'/>"
+                + "<xs:include schemaLocation='late.xsd'/>" );
+        write( "common/types.xsd", "<xs:include schemaLocation='../base.xsd'/><xs:simpleType name='t'/>" );
+        write( "base.xsd", "<xs:import namespace='urn:main' schemaLocation='main.xsd'/>" );
+        write( "late.xsd", "" );
+        Files.write( folder.resolveSibling( "outside.xsd" ), ( SCHEMA_START + SCHEMA_END ).getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    @Test
+    public void shouldFindLeadingReferencesInsideFolder() {
+        final SchemaReferences fixture = new SchemaReferences( folder );
+
+        assertThat( fixture.of( "main.xsd" ), contains( name( "common/types.xsd" ) ) );
+        assertThat( fixture.of( "common/types.xsd" ), contains( "base.xsd" ) );
+        assertThat( fixture.of( "no-such.xsd" ), is( empty() ) );
+    }
+
+    @Test
+    public void shouldFollowReferencesWithoutGivenFiles() {
+        final SchemaReferences fixture = new SchemaReferences( folder );
+
+        assertThat( fixture.closure( Arrays.asList( "main.xsd" ) ), contains( name( "common/types.xsd" ), "base.xsd" ) );
+        assertThat( fixture.closure( Arrays.asList( "./common/../base.xsd" ) ), contains( "main.xsd", name( "common/types.xsd" ) ) );
+    }
+
+    @Test
+    public void shouldScanFromManyThreads() {
+        final SchemaReferences fixture = new SchemaReferences( folder );
+        final List<List<String>> found = IntStream.range( 0, 64 ).parallel()
+                .mapToObj( i -> fixture.of( i % 2 == 0 ? "main.xsd" : "common/types.xsd" ) )
+                .collect( Collectors.toList() );
+
+        for( int i = 0; i < found.size(); i++ ) {
+            assertThat( found.get( i ), contains( i % 2 == 0 ? name( "common/types.xsd" ) : "base.xsd" ) );
+        }
+    }
+
+    private void write( final String name, final String components ) throws Exception {
+        final Path file = folder.resolve( name );
+        Files.createDirectories( file.getParent() );
+        Files.write( file, ( SCHEMA_START + components + SCHEMA_END ).getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    /** name as the platform writes it */
+    private static String name( final String path ) {
+        return path.replace( '/', File.separatorChar );
+    }
+}
@@ -0,0 +1,207 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package io.github.valters.xsdiff.format;
+
+import org.outerj.daisy.diff.tag.TagSaxDiffOutput;
+import org.xml.sax.ContentHandler;
+
+/**
+ * Produces a view of a change within a {@link RenderBudget}. When input is too large, the view is not started at all: this is
+ * the main guard, as it costs nothing. When view takes too long, it is abandoned. Either way the report gets a note, followed
+ * by the (cheaper) fallback view.
+ * <p>
+ * Time limited views are produced into a buffer by a {@link RenderRunner}, so that nothing of an abandoned view reaches the report.
+ */
+public class BudgetedFormatter implements ContentHandlerFormatter, DiffOutputFormatter {
+
+    private final String label;
+
+    private final ContentHandlerFormatter contentFormatter;
+
+    private final DiffOutputFormatter outputFormatter;
+
+    private final DiffOutputFormatter fallback;
+
+    private final RenderBudget budget;
+
+    private final long inputLength;
+
+    private final RenderRunner runner;
+
+    /** told when a time limited view is abandoned (or not started) */
+    private final Runnable onAbandoned;
+
+    private BudgetedFormatter( final String label, final ContentHandlerFormatter contentFormatter, final DiffOutputFormatter outputFormatter,
+            final DiffOutputFormatter fallback, final RenderBudget budget, final long inputLength, final RenderRunner runner, final Runnable onAbandoned ) {
+        this.label = label;
+        this.contentFormatter = contentFormatter;
+        this.outputFormatter = outputFormatter;
+        this.fallback = fallback;
+        this.budget = budget;
+        this.inputLength = inputLength;
+        this.runner = runner;
+        this.onAbandoned = onAbandoned;
+    }
+
+    /**
+     * @param label view name, for the note
+     * @param inputLength characters of old and new text together
+     * @param runner runs time limited view; not used if budget has no time limit
+     * @return formatter that shows {@link EmptyDiff} when budget is exceeded (or the formatter itself, when budget is unlimited)
+     */
+    public static DiffOutputFormatter output( final String label, final DiffOutputFormatter formatter, final RenderBudget budget, final long inputLength,
+            final RenderRunner runner ) {
+        return output( label, formatter, budget, inputLength, runner, () -> { } );
+    }
+
+    /**
+     * @param onAbandoned called when the view did not finish in time (unlike input size, this depends on how busy the machine was)
+     * @see #output(String, DiffOutputFormatter, RenderBudget, long, RenderRunner)
+     */
+    public static DiffOutputFormatter output( final String label, final DiffOutputFormatter formatter, final RenderBudget budget, final long inputLength,
+            final RenderRunner runner, final Runnable onAbandoned ) {
+        if( budget == RenderBudget.UNLIMITED ) {
+            return formatter;
+        }
+        return new BudgetedFormatter( label, null, formatter, EmptyDiff.INSTANCE, budget, inputLength, runner, onAbandoned );
+    }
+
+    /**
+     * @param label view name, for the note
+     * @param inputLength characters of old and new text together
+     * @param fallback view to show instead, when budget is exceeded
+     * @param runner runs time limited view; not used if budget has no time limit
+     * @return budgeted formatter (or the formatter itself, when budget is unlimited)
+     */
+    public static ContentHandlerFormatter content( final String label, final ContentHandlerFormatter formatter, final RenderBudget budget, final long inputLength,
+            final DiffOutputFormatter fallback, final RenderRunner runner ) {
+        return content( label, formatter, budget, inputLength, fallback, runner, () -> { } );
+    }
+
+    /**
+     * @param onAbandoned called when the view did not finish in time (unlike input size, this depends on how busy the machine was)
+     * @see #content(String, ContentHandlerFormatter, RenderBudget, long, DiffOutputFormatter, RenderRunner)
+     */
+    public static ContentHandlerFormatter content( final String label, final ContentHandlerFormatter formatter, final RenderBudget budget, final long inputLength,
+            final DiffOutputFormatter fallback, final RenderRunner runner, final Runnable onAbandoned ) {
+        if( budget == RenderBudget.UNLIMITED ) {
+            return formatter;
+        }
+        return new BudgetedFormatter( label, formatter, null, fallback, budget, inputLength, runner, onAbandoned );
+    }
+
+    @Override
+    public void printDiff( final DiffOutput output ) {
+        if( ! budget.allowsInput( inputLength ) ) {
+            printFallback( output, tooLarge() );
+        }
+        else if( ! budget.isTimeLimited() ) {
+            outputFormatter.printDiff( output );
+        }
+        else {
+            final DiffOutputBuffer buffer = new DiffOutputBuffer();
+            final RenderRunner.Outcome outcome = runner.run( label, () -> outputFormatter.printDiff( buffer ), budget.getTimeoutMillis() );
+            if( outcome == RenderRunner.Outcome.FINISHED ) {
+                buffer.replay( output );
+            }
+            else {
+                printFallback( output, tooSlow( outcome ) );
+            }
+        }
+    }
+
+    @Override
+    public void printDiff( final ContentHandler resultHandler ) {
+        if( ! budget.allowsInput( inputLength ) ) {
+            printFallback( new SaxDiffOutput( resultHandler ), tooLarge() );
+        }
+        else if( ! budget.isTimeLimited() ) {
+            contentFormatter.printDiff( resultHandler );
+        }
+        else {
+            final SaxEventBuffer buffer = new SaxEventBuffer();
+            final RenderRunner.Outcome outcome = runner.run( label, () -> contentFormatter.printDiff( buffer ), budget.getTimeoutMillis() );
+            if( outcome == RenderRunner.Outcome.FINISHED ) {
+                buffer.replay( resultHandler );
+            }
+            else {
+                printFallback( new SaxDiffOutput( resultHandler ), tooSlow( outcome ) );
+            }
+        }
+    }
+
+    private String tooLarge() {
+        return "input of " + inputLength + " characters is over the limit of " + budget.getMaxInputLength();
+    }
+
+    private String tooSlow( final RenderRunner.Outcome outcome ) {
+        onAbandoned.run();
+        if( outcome == RenderRunner.Outcome.BUSY ) {
+            return "an earlier " + label + " view is still running over its budget";
+        }
+        return "took longer than " + budget.getTimeoutMillis() + " ms";
+    }
+
+    private void printFallback( final DiffOutput output, final String reason ) {
+        output.clearPart( "(" + label + " view skipped: " + reason + ")" );
+        output.newline();
+        fallback.printDiff( output );
+    }
+
+    /** writes fallback view straight to content handler, highlighted same way as daisy diff output */
+    private static class SaxDiffOutput implements DiffOutput {
+
+        private final TagSaxDiffOutput diffOutput;
+
+        SaxDiffOutput( final ContentHandler handler ) {
+            this.diffOutput = new TagSaxDiffOutput( handler );
+        }
+
+        @Override
+        public void clearPart( final String text ) {
+            try {
+                diffOutput.addClearPart( text );
+            }
+            catch( final Exception e ) {
+                throw new RuntimeException( "Failed to write text: " + e, e );
+            }
+        }
+
+        @Override
+        public void removedPart( final String text ) {
+            try {
+                diffOutput.addRemovedPart( text );
+            }
+            catch( final Exception e ) {
+                throw new RuntimeException( "Failed to write removed text: " + e, e );
+            }
+        }
+
+        @Override
+        public void addedPart( final String text ) {
+            try {
+                diffOutput.addAddedPart( text );
+            }
+            catch( final Exception e ) {
+                throw new RuntimeException( "Failed to write added text: " + e, e );
+            }
+        }
+
+        @Override
+        public void newline() {
+            diffOutput.newline();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package io.github.valters.xsdiff.format;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Records diff output, to be written out later: lets a view be produced on another thread, then written to the report in order.
+ * Replaying calls the real output the same way, so it numbers highlighted parts the same as if written directly.
+ */
+public class DiffOutputBuffer implements DiffOutput {
+
+    private final List<Consumer<DiffOutput>> events = new ArrayList<>();
+
+    @Override
+    public void clearPart( final String text ) {
+        events.add( output -> output.clearPart( text ) );
+    }
+
+    @Override
+    public void removedPart( final String text ) {
+        events.add( output -> output.removedPart( text ) );
+    }
+
+    @Override
+    public void addedPart( final String text ) {
+        events.add( output -> output.addedPart( text ) );
+    }
+
+    @Override
+    public void newline() {
+        events.add( DiffOutput::newline );
+    }
+
+    /** write recorded output */
+    public void replay( final DiffOutput output ) {
+        for( final Consumer<DiffOutput> event : events ) {
+            event.accept( output );
+        }
+    }
+}
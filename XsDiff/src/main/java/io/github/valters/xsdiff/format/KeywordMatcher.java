@@ -0,0 +1,148 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package io.github.valters.xsdiff.format;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.ahocorasick.trie.Emit;
+import org.ahocorasick.trie.Trie;
+import org.ahocorasick.trie.Trie.TrieBuilder;
+
+/**
+ * Finds where changed fragments occur in node text, to highlight them. Built once for a set of keywords, then reused for
+ * every text: large keyword sets use an Aho-Corasick trie, tiny ones a plain <code>indexOf</code> scan, which is cheaper than
+ * building the automaton.
+ * <p>
+ * Either way matches do not overlap: longer keywords win, then the one that starts first (same as <code>Trie.removeOverlaps()</code>).
+ */
+public final class KeywordMatcher {
+
+    /** up to this many keywords, scan the text once for each keyword */
+    static final int SCAN_LIMIT = 4;
+
+    private static final KeywordMatcher NONE = new KeywordMatcher( Collections.<String>emptyList(), null );
+
+    /** longest first, then by position */
+    private static final Comparator<Match> BY_SIZE = Comparator.comparingInt( ( final Match m ) -> m.start - m.end ).thenComparingInt( m -> m.start );
+
+    /** keyword found in text */
+    public static final class Match {
+        private final int start;
+        private final int end;
+        private final String keyword;
+
+        Match( final int start, final String keyword ) {
+            this.start = start;
+            this.end = start + keyword.length();
+            this.keyword = keyword;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        /** @return position after the keyword */
+        public int getEnd() {
+            return end;
+        }
+
+        public String getKeyword() {
+            return keyword;
+        }
+
+        private boolean overlaps( final Match other ) {
+            return start < other.end && other.start < end;
+        }
+    }
+
+    /** keywords for scan, or null when trie is used */
+    private final Collection<String> keywords;
+
+    private final Trie trie;
+
+    private KeywordMatcher( final Collection<String> keywords, final Trie trie ) {
+        this.keywords = keywords;
+        this.trie = trie;
+    }
+
+    /** @param keywords empty keywords are skipped */
+    public static KeywordMatcher of( final Iterable<String> keywords ) {
+        final Set<String> distinct = new LinkedHashSet<>();
+        for( final String keyword : keywords ) {
+            if( keyword != null && ! keyword.isEmpty() ) {
+                distinct.add( keyword );
+            }
+        }
+
+        if( distinct.isEmpty() ) {
+            return NONE;
+        }
+        if( distinct.size() <= SCAN_LIMIT ) {
+            return new KeywordMatcher( new ArrayList<>( distinct ), null );
+        }
+
+        final TrieBuilder trie = Trie.builder().removeOverlaps();
+        for( final String keyword : distinct ) {
+            trie.addKeyword( keyword );
+        }
+        return new KeywordMatcher( null, trie.build() );
+    }
+
+    /** @return non-overlapping matches, in text order */
+    public List<Match> match( final String text ) {
+        if( trie != null ) {
+            final List<Match> matches = new ArrayList<>();
+            for( final Emit emit : trie.parseText( text ) ) {
+                matches.add( new Match( emit.getStart(), emit.getKeyword() ) );
+            }
+            return matches;
+        }
+        if( keywords.isEmpty() ) {
+            return Collections.emptyList();
+        }
+
+        final List<Match> found = new ArrayList<>();
+        for( final String keyword : keywords ) {
+            for( int at = text.indexOf( keyword ); at >= 0; at = text.indexOf( keyword, at + 1 ) ) {
+                found.add( new Match( at, keyword ) );
+            }
+        }
+        return removeOverlaps( found );
+    }
+
+    private static List<Match> removeOverlaps( final List<Match> found ) {
+        if( found.size() < 2 ) {
+            return found;
+        }
+        found.sort( BY_SIZE );
+        final TreeMap<Integer, Match> kept = new TreeMap<>(); // by start; kept matches never overlap each other
+        for( final Match candidate : found ) {
+            final Map.Entry<Integer, Match> before = kept.floorEntry( candidate.start );
+            final Map.Entry<Integer, Match> after = kept.ceilingEntry( candidate.start );
+            if( ( before == null || ! before.getValue().overlaps( candidate ) ) && ( after == null || ! after.getValue().overlaps( candidate ) ) ) {
+                kept.put( candidate.start, candidate );
+            }
+        }
+        return new ArrayList<>( kept.values() );
+    }
+}
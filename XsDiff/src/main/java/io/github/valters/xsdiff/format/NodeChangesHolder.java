@@ -14,15 +14,29 @@
 
 package io.github.valters.xsdiff.format;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.collections4.SetValuedMap;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Node;
 import org.apache.commons.collections4.multimap.HashSetValuedHashMap;
 
-import com.google.common.base.Strings;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
+import io.github.valters.xsdiff.report.NodePositions;
+import io.github.valters.xsdiff.report.NodeText;
+
+/**
+ * node texts are kept as handles into a {@link TextPool} shared by all holders of the diff, and decoded when report is rendered.
+ * changed nodes are only kept until {@link #releaseNodes()}: then just their positions in parent text remain.
+ */
 public class NodeChangesHolder implements SemanticNodeChanges {
 
     /** what kind of text operation happened */
@@ -30,17 +44,34 @@ public class NodeChangesHolder implements SemanticNodeChanges {
 
     protected final String nodeXpath;
 
-    private String controlParentNodeNext;
+    private final TextPool texts;
+
+    private int controlParentText = TextPool.NONE;
+
+    private int testParentText = TextPool.NONE;
+
+    /** positions of descendants in parent text, until nodes are released */
+    private NodePositions controlParentPositions;
+
+    private NodePositions testParentPositions;
+
+    private final List<Integer> addedNodeText = Lists.newArrayList();
 
-    private String testParentNodeNext;
+    private final List<Integer> removedNodeText = Lists.newArrayList();
 
-    private final List<String> addedNodeText = Lists.newArrayList();
+    private final SetValuedMap<Integer, Integer> addedAttrText = new HashSetValuedHashMap<>();
 
-    private final List<String> removedNodeText = Lists.newArrayList();
+    private final SetValuedMap<Integer, Integer> removedAttrText = new HashSetValuedHashMap<>();
 
-    private final SetValuedMap<String, String> addedAttrText = new HashSetValuedHashMap<>();
+    /** added nodes and attributes, to find them in parent text by position; null once released */
+    private List<Node> addedParts = Lists.newArrayList();
 
-    private final SetValuedMap<String, String> removedAttrText = new HashSetValuedHashMap<>();
+    private List<Node> removedParts = Lists.newArrayList();
+
+    /** [start, end) of each changed part in parent text, once nodes are released; null if some position is not known */
+    private int[] addedSpans;
+
+    private int[] removedSpans;
 
     private DaisyDiffFormatter daisyDiff;
 
@@ -48,32 +79,99 @@ public class NodeChangesHolder implements SemanticNodeChanges {
 
     private WikedDiffFormatter wikedDiff;
 
+    /** when set, formatters that were not attached explicitly are created on first use, from final parent texts */
+    private boolean autoDiffs;
+
+    /** highlight matchers, built on first use and dropped when changes are marked */
+    private KeywordMatcher addedKeywords;
+
+    private KeywordMatcher removedKeywords;
+
+    private final Map<Integer, KeywordMatcher> addedAttrKeywords = Maps.newHashMap();
+
+    private final Map<Integer, KeywordMatcher> removedAttrKeywords = Maps.newHashMap();
+
+    /** text of node with changed attributes to its handle, built on first use: node text is looked up without encoding it */
+    private Map<String, Integer> addedAttrNodes;
+
+    private Map<String, Integer> removedAttrNodes;
+
     public NodeChangesHolder( final String nodeXpath ) {
+        this( nodeXpath, new TextPool() );
+    }
+
+    /** @param texts pool shared with other holders of same diff */
+    public NodeChangesHolder( final String nodeXpath, final TextPool texts ) {
         super();
         this.nodeXpath = nodeXpath;
+        this.texts = texts;
     }
 
+    /** @deprecated without the node its position is not known, so parts are highlighted by text search; use {@link #addedNode(Node, String)} */
+    @Deprecated
     public void addedNode( final String nodeText ) {
-        addedNodeText.add( nodeText );
+        addedNode( null, nodeText );
     }
 
+    /** @deprecated without the node its position is not known, so parts are highlighted by text search; use {@link #removedNode(Node, String)} */
+    @Deprecated
     public void removedNode( final String nodeText ) {
-        removedNodeText.add( nodeText );
+        removedNode( null, nodeText );
     }
 
+    public void addedNode( final Node node, final String nodeText ) {
+        addPart( OpType.ADDED, node );
+        addedNodeText.add( texts.add( nodeText ) );
+        addedKeywords = null;
+    }
+
+    public void removedNode( final Node node, final String nodeText ) {
+        addPart( OpType.REMOVED, node );
+        removedNodeText.add( texts.add( nodeText ) );
+        removedKeywords = null;
+    }
+
+    /** part marked after nodes were released has no known position: highlights fall back to text search */
+    private void addPart( final OpType op, final Node part ) {
+        if( addedParts == null ) {
+            if( op == OpType.ADDED ) {
+                addedSpans = null;
+            }
+            else {
+                removedSpans = null;
+            }
+        }
+        else {
+            ( op == OpType.ADDED ? addedParts : removedParts ).add( part );
+        }
+    }
+
+    private List<String> decode( final List<Integer> handles ) {
+        return Lists.transform( handles, texts::get );
+    }
+
+    private Set<String> decode( final Set<Integer> handles ) {
+        final Set<String> decoded = new LinkedHashSet<>();
+        for( final Integer handle : handles ) {
+            decoded.add( texts.get( handle ) );
+        }
+        return decoded;
+    }
 
     @Override
     public List<String> getAddedNodes() {
-        return addedNodeText;
+        return decode( addedNodeText );
     }
 
     @Override
     public List<String> getRemovedNodes() {
-        return removedNodeText;
+        return decode( removedNodeText );
     }
-
     @Override
     public ContentHandlerFormatter getDaisyDiff() {
+        if( daisyDiff == null && autoDiffs ) {
+            daisyDiff = new DaisyDiffFormatter( getControlParentNodeNext(), getTestParentNodeNext() );
+        }
         if( daisyDiff == null ) {
             return EmptyDiff.INSTANCE;
         }
@@ -86,6 +184,9 @@ public class NodeChangesHolder implements SemanticNodeChanges {
 
     @Override
     public DiffOutputFormatter getHistogramDiff() {
+        if( histogramDiff == null && autoDiffs ) {
+            histogramDiff = new HistogramDiffFormatter( getControlParentNodeNext(), getTestParentNodeNext() );
+        }
         if( histogramDiff == null ) {
             return EmptyDiff.INSTANCE;
         }
@@ -98,28 +199,54 @@ public class NodeChangesHolder implements SemanticNodeChanges {
 
     @Override
     public String getControlParentNodeNext() {
-        return controlParentNodeNext;
+        return texts.get( controlParentText );
     }
 
     @Override
     public String getTestParentNodeNext() {
-        return testParentNodeNext;
+        return texts.get( testParentText );
     }
 
+    @Override
+    public long getParentTextLength() {
+        return texts.length( controlParentText ) + texts.length( testParentText );
+    }
+
+    public void addParentNodeText( final OpType op, final NodeText nodeText ) {
+        if( nodeText == null ) {
+            return;
+        }
+        addParentNodeText( op, nodeText.getText(), nodeText.getPositions() );
+    }
+
+    /** @deprecated text without positions: changed parts are highlighted by text search; use {@link #addParentNodeText(OpType, NodeText)} */
+    @Deprecated
     public void addParentNodeText( final OpType op, final String nodeText ) {
+        if( nodeText == null ) {
+            return;
+        }
+        addParentNodeText( op, nodeText, null );
+    }
+
+    private void addParentNodeText( final OpType op, final String text, final NodePositions positions ) {
         if( op == OpType.ADDED ) {
-            if( Strings.isNullOrEmpty( this.testParentNodeNext ) ) {
-                this.testParentNodeNext = nodeText;
+            if( texts.isEmpty( this.testParentText ) ) {
+                this.testParentText = texts.add( text );
+                this.testParentPositions = positions;
             }
         } else if( op == OpType.REMOVED ) {
-            if( Strings.isNullOrEmpty( this.controlParentNodeNext ) ) {
-                this.controlParentNodeNext = nodeText;
+            if( texts.isEmpty( this.controlParentText ) ) {
+                this.controlParentText = texts.add( text );
+                this.controlParentPositions = positions;
             }
         }
     }
 
     @Override
     public ContentHandlerFormatter getWikedDiff() {
+        if( wikedDiff == null && autoDiffs ) {
+            wikedDiff = new WikedDiffFormatter( getControlParentNodeNext(), getTestParentNodeNext() );
+        }
         if( wikedDiff == null ) {
             return EmptyDiff.INSTANCE;
         }
@@ -130,32 +257,152 @@ public class NodeChangesHolder implements SemanticNodeChanges {
         this.wikedDiff = wikedDiff;
     }
 
+    /** @deprecated highlighted by text search; use {@link #addedAttribute(Attr, String, String)} */
+    @Deprecated
     public void addedAttribute( final String nodeText, final String attributeText ) {
-        addedAttrText.put( nodeText, attributeText );
+        addedAttribute( null, nodeText, attributeText );
     }
 
+    /** @deprecated highlighted by text search; use {@link #removedAttribute(Attr, String, String)} */
+    @Deprecated
     public void removedAttribute( final String nodeText, final String attributeText ) {
-        removedAttrText.put( nodeText, attributeText );
+        removedAttribute( null, nodeText, attributeText );
+    }
+
+    public void addedAttribute( final Attr attr, final String nodeText, final String attributeText ) {
+        addPart( OpType.ADDED, attr );
+        final int node = texts.add( nodeText );
+        addedAttrText.put( node, texts.add( attributeText ) );
+        addedKeywords = null;
+        addedAttrKeywords.remove( node );
+        addedAttrNodes = null;
+    }
+
+    public void removedAttribute( final Attr attr, final String nodeText, final String attributeText ) {
+        addPart( OpType.REMOVED, attr );
+        final int node = texts.add( nodeText );
+        removedAttrText.put( node, texts.add( attributeText ) );
+        removedKeywords = null;
+        removedAttrKeywords.remove( node );
+        removedAttrNodes = null;
+    }
+
+    private Map<String, Integer> attrNodes( final Set<Integer> handles ) {
+        final Map<String, Integer> nodes = Maps.newHashMapWithExpectedSize( handles.size() );
+        for( final Integer handle : handles ) {
+            nodes.put( texts.get( handle ), handle );
+        }
+        return nodes;
+    }
+
+    private int addedAttrNode( final String nodeText ) {
+        if( addedAttrNodes == null ) {
+            addedAttrNodes = attrNodes( addedAttrText.keySet() );
+        }
+        return addedAttrNodes.getOrDefault( nodeText, TextPool.NONE );
+    }
+
+    private int removedAttrNode( final String nodeText ) {
+        if( removedAttrNodes == null ) {
+            removedAttrNodes = attrNodes( removedAttrText.keySet() );
+        }
+        return removedAttrNodes.getOrDefault( nodeText, TextPool.NONE );
     }
 
     @Override
     public Set<String> getNodesWithAddedAttributes() {
-        return addedAttrText.keySet();
+        return decode( addedAttrText.keySet() );
     }
 
     @Override
     public Set<String> getAddedAttributesForNode( final String nodeText ) {
-        return addedAttrText.get( nodeText );
+        return decode( addedAttrText.get( addedAttrNode( nodeText ) ) );
     }
 
     @Override
     public Set<String> getNodeWithRemovedAttributes() {
-        return removedAttrText.keySet();
+        return decode( removedAttrText.keySet() );
     }
 
     @Override
     public Set<String> getRemovedAttributesForNode( final String nodeText ) {
-        return removedAttrText.get( nodeText );
+        return decode( removedAttrText.get( removedAttrNode( nodeText ) ) );
+    }
+
+    @Override
+    public int[] getAddedPartSpans() {
+        releaseNodes();
+        return addedSpans;
+    }
+
+    @Override
+    public int[] getRemovedPartSpans() {
+        releaseNodes();
+        return removedSpans;
+    }
+
+    /**
+     * changes are all marked: find changed parts in parent texts, then let go of the nodes and positions, so that they do not keep
+     * the documents reachable. parts marked later are highlighted by text search.
+     */
+    public void releaseNodes() {
+        if( addedParts == null ) {
+            return;
+        }
+        addedSpans = spans( testParentPositions, addedParts );
+        removedSpans = spans( controlParentPositions, removedParts );
+        addedParts = null;
+        removedParts = null;
+        controlParentPositions = null;
+        testParentPositions = null;
+    }
+
+    /** @return [start, end) pairs of parts, ordered by start (and longer part first), or null if position of some part is not known */
+    private static int[] spans( final NodePositions parent, final List<Node> parts ) {
+        if( parent == null ) {
+            return null;
+        }
+        final List<int[]> spans = new ArrayList<>( parts.size() );
+        for( final Node part : parts ) {
+            if( ! parent.contains( part ) ) {
+                return null;
+            }
+            spans.add( new int[] { parent.getStart( part ), parent.getEnd( part ) } );
+        }
+        spans.sort( Comparator.<int[]>comparingInt( span -> span[0] ).thenComparingInt( span -> - span[1] ) );
+
+        final int[] flat = new int[spans.size() * 2];
+        for( int i = 0; i < spans.size(); i++ ) {
+            flat[i * 2] = spans.get( i )[0];
+            flat[i * 2 + 1] = spans.get( i )[1];
+        }
+        return flat;
+    }
+
+    @Override
+    public KeywordMatcher getAddedKeywords() {
+        if( addedKeywords == null ) {
+            addedKeywords = KeywordMatcher.of( Iterables.concat( getAddedNodes(), getNodesWithAddedAttributes() ) );
+        }
+        return addedKeywords;
+    }
+
+    @Override
+    public KeywordMatcher getAddedAttributeKeywords( final String nodeText ) {
+        return addedAttrKeywords.computeIfAbsent( addedAttrNode( nodeText ), node -> KeywordMatcher.of( getAddedAttributesForNode( nodeText ) ) );
+    }
+
+    @Override
+    public KeywordMatcher getRemovedKeywords() {
+        if( removedKeywords == null ) {
+            removedKeywords = KeywordMatcher.of( Iterables.concat( getRemovedNodes(), getNodeWithRemovedAttributes() ) );
+        }
+        return removedKeywords;
+    }
+
+    @Override
+    public KeywordMatcher getRemovedAttributeKeywords( final String nodeText ) {
+        return removedAttrKeywords.computeIfAbsent( removedAttrNode( nodeText ), node -> KeywordMatcher.of( getRemovedAttributesForNode( nodeText ) ) );
     }
 
     @Override
@@ -168,11 +415,8 @@ public class NodeChangesHolder implements SemanticNodeChanges {
         return !removedNodeText.isEmpty() || !removedAttrText.isEmpty();
     }
 
+    /** show conventional (text) diffs of parent texts as well: formatters are only created if their view is rendered */
     public void attachAutoDiffs() {
-        this.wikedDiff = new WikedDiffFormatter( controlParentNodeNext, testParentNodeNext );
-
-        this.daisyDiff = new DaisyDiffFormatter( controlParentNodeNext, testParentNodeNext );
-
-        this.histogramDiff = new HistogramDiffFormatter( controlParentNodeNext, testParentNodeNext );
+        this.autoDiffs = true;
     }
 }
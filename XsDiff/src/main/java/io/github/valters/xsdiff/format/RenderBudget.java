@@ -0,0 +1,82 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package io.github.valters.xsdiff.format;
+
+import com.google.common.primitives.Ints;
+
+/** how long a view of one change may take, and how large input it may be given; 0 means no limit */
+public final class RenderBudget {
+
+    public static final RenderBudget UNLIMITED = new RenderBudget( 0, 0 );
+
+    private final long timeoutMillis;
+
+    private final int maxInputLength;
+
+    private RenderBudget( final long timeoutMillis, final int maxInputLength ) {
+        this.timeoutMillis = timeoutMillis;
+        this.maxInputLength = maxInputLength;
+    }
+
+    /**
+     * @param timeoutMillis view is abandoned when it takes longer
+     * @param maxInputLength view is not produced when old and new parent texts together have more characters
+     */
+    public static RenderBudget of( final long timeoutMillis, final int maxInputLength ) {
+        if( timeoutMillis < 0 || maxInputLength < 0 ) {
+            throw new IllegalArgumentException( "Budget can not be negative: " + timeoutMillis + " ms, " + maxInputLength + " characters" );
+        }
+        if( timeoutMillis == 0 && maxInputLength == 0 ) {
+            return UNLIMITED;
+        }
+        return new RenderBudget( timeoutMillis, maxInputLength );
+    }
+
+    /**
+     * @param spec "MILLIS" or "MILLIS/KB", for example "5000/512": 5 seconds, 512 KB (of characters) of input
+     * @throws IllegalArgumentException if spec is not valid
+     */
+    public static RenderBudget parse( final String spec ) {
+        final String[] parts = spec.trim().split( "/", -1 );
+        final Integer millis = Ints.tryParse( parts[0].trim() );
+        final Integer kb = parts.length > 1 ? Ints.tryParse( parts[1].trim() ) : Integer.valueOf( 0 );
+        if( parts.length > 2 || millis == null || kb == null || millis < 0 || kb < 0 || kb > Integer.MAX_VALUE / 1024 ) {
+            throw new IllegalArgumentException( "Expected MILLIS or MILLIS/KB (0 for no limit), got: " + spec );
+        }
+        return of( millis, kb * 1024 );
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public int getMaxInputLength() {
+        return maxInputLength;
+    }
+
+    public boolean isTimeLimited() {
+        return timeoutMillis > 0;
+    }
+
+    /** @return true if input of this many characters is allowed */
+    public boolean allowsInput( final long inputLength ) {
+        return maxInputLength == 0 || inputLength <= maxInputLength;
+    }
+
+    @Override
+    public String toString() {
+        return ( timeoutMillis > 0 ? timeoutMillis + " ms" : "no time limit" ) + ", " + ( maxInputLength > 0 ? maxInputLength + " characters" : "no size limit" );
+    }
+}
@@ -0,0 +1,104 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package io.github.valters.xsdiff.format;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs time limited views on a fixed number of (daemon) threads. Diff libraries do not check for interruption, so a view that
+ * took too long can not be stopped: it is abandoned and runs to the end. While it runs, no new view of same kind is started,
+ * so abandoned views can not pile up and slow down the rest of the run.
+ * <p>
+ * One runner can be shared by all reports of a run.
+ */
+public class RenderRunner implements AutoCloseable {
+
+    /** how a view run ended */
+    public static enum Outcome { FINISHED, TIMED_OUT, BUSY };
+
+    private final ExecutorService executor;
+
+    /** applied to each view task before it is handed to a render thread */
+    private final UnaryOperator<Runnable> decorator;
+
+    /** view label to its abandoned run, while that may still be running */
+    private final Map<String, Future<?>> abandoned = new ConcurrentHashMap<>();
+
+    /** @param threads how many views may run at the same time: usually same as the number of threads diffing */
+    public RenderRunner( final int threads ) {
+        this( threads, UnaryOperator.identity() );
+    }
+
+    /** @param decorator wraps each view task, to carry context of the calling thread (such as where its console output goes) */
+    public RenderRunner( final int threads, final UnaryOperator<Runnable> decorator ) {
+        this.executor = Executors.newFixedThreadPool( threads, new ThreadFactoryBuilder().setDaemon( true ).setNameFormat( "xsdiff-render-%d" ).build() );
+        this.decorator = decorator;
+    }
+
+    /**
+     * @param label kind of view: while an abandoned view of this kind is still running, new ones are not started
+     * @return {@link Outcome#BUSY} if render was not started at all, {@link Outcome#TIMED_OUT} if it did not finish in time
+     */
+    public Outcome run( final String label, final Runnable render, final long timeoutMillis ) {
+        final Future<?> previous = abandoned.get( label );
+        if( previous != null ) {
+            if( ! previous.isDone() ) {
+                return Outcome.BUSY;
+            }
+            abandoned.remove( label, previous );
+        }
+
+        final AtomicBoolean started = new AtomicBoolean();
+        final Future<?> rendering = executor.submit( decorator.apply( () -> {
+            if( started.compareAndSet( false, true ) ) {
+                render.run();
+            }
+        } ) );
+        try {
+            rendering.get( timeoutMillis, TimeUnit.MILLISECONDS );
+            return Outcome.FINISHED;
+        }
+        catch( final TimeoutException e ) {
+            if( ! started.compareAndSet( false, true ) ) {
+                abandoned.put( label, rendering ); // still running: keep it from being joined by others
+            }
+            return Outcome.TIMED_OUT;
+        }
+        catch( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted while producing " + label + " view", e );
+        }
+        catch( final ExecutionException e ) {
+            throw new RuntimeException( "Failed to produce " + label + " view: " + e.getCause(), e.getCause() );
+        }
+    }
+
+    /** no more views are started; abandoned ones still run to the end */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
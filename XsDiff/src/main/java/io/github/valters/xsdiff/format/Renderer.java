@@ -0,0 +1,61 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package io.github.valters.xsdiff.format;
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/** views of a changed node, each shown in own tab of the report; views that are not selected are not produced at all */
+public enum Renderer {
+    SEMANTIC( "semantic" ),
+    WIKED( "wikEd" ),
+    HISTOGRAM( "histogram" ),
+    DAISY( "daisy" );
+
+    private final String label;
+
+    private Renderer( final String label ) {
+        this.label = label;
+    }
+
+    /** @return tab title */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @param names comma separated, case does not matter: "semantic,histogram"
+     * @throws IllegalArgumentException if a name is not known, or none is given
+     */
+    public static Set<Renderer> parse( final String names ) {
+        final Set<Renderer> renderers = EnumSet.noneOf( Renderer.class );
+        for( final String name : names.split( "," ) ) {
+            if( name.trim().isEmpty() ) {
+                continue;
+            }
+            try {
+                renderers.add( valueOf( name.trim().toUpperCase( Locale.ROOT ) ) );
+            }
+            catch( final IllegalArgumentException e ) {
+                throw new IllegalArgumentException( "Unknown renderer: " + name.trim() + ", expected one of " + EnumSet.allOf( Renderer.class ), e );
+            }
+        }
+        if( renderers.isEmpty() ) {
+            throw new IllegalArgumentException( "No renderers given" );
+        }
+        return renderers;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package io.github.valters.xsdiff.format;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/** Records SAX events (copying characters and attributes), to be sent to the real content handler later, in same order. */
+public class SaxEventBuffer implements ContentHandler {
+
+    /** recorded call */
+    private interface SaxEvent {
+        void replay( ContentHandler handler ) throws SAXException;
+    }
+
+    private final List<SaxEvent> events = new ArrayList<>();
+
+    /** send recorded events */
+    public void replay( final ContentHandler handler ) {
+        try {
+            for( final SaxEvent event : events ) {
+                event.replay( handler );
+            }
+        }
+        catch( final SAXException e ) {
+            throw new RuntimeException( "Failed to write buffered content: " + e, e );
+        }
+    }
+
+    @Override
+    public void setDocumentLocator( final Locator locator ) {
+        // positions in buffered content mean nothing to the real handler
+    }
+
+    @Override
+    public void startDocument() {
+        events.add( ContentHandler::startDocument );
+    }
+
+    @Override
+    public void endDocument() {
+        events.add( ContentHandler::endDocument );
+    }
+
+    @Override
+    public void startPrefixMapping( final String prefix, final String uri ) {
+        events.add( handler -> handler.startPrefixMapping( prefix, uri ) );
+    }
+
+    @Override
+    public void endPrefixMapping( final String prefix ) {
+        events.add( handler -> handler.endPrefixMapping( prefix ) );
+    }
+
+    @Override
+    public void startElement( final String uri, final String localName, final String qName, final Attributes atts ) {
+        final Attributes copy = new AttributesImpl( atts );
+        events.add( handler -> handler.startElement( uri, localName, qName, copy ) );
+    }
+
+    @Override
+    public void endElement( final String uri, final String localName, final String qName ) {
+        events.add( handler -> handler.endElement( uri, localName, qName ) );
+    }
+
+    @Override
+    public void characters( final char[] ch, final int start, final int length ) {
+        final char[] copy = Arrays.copyOfRange( ch, start, start + length );
+        events.add( handler -> handler.characters( copy, 0, copy.length ) );
+    }
+
+    @Override
+    public void ignorableWhitespace( final char[] ch, final int start, final int length ) {
+        final char[] copy = Arrays.copyOfRange( ch, start, start + length );
+        events.add( handler -> handler.ignorableWhitespace( copy, 0, copy.length ) );
+    }
+
+    @Override
+    public void processingInstruction( final String target, final String data ) {
+        events.add( handler -> handler.processingInstruction( target, data ) );
+    }
+
+    @Override
+    public void skippedEntity( final String name ) {
+        events.add( handler -> handler.skippedEntity( name ) );
+    }
+}
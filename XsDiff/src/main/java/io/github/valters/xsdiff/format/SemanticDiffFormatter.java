@@ -14,21 +14,28 @@
 
 package io.github.valters.xsdiff.format;
 
-import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.Map;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
-import org.ahocorasick.trie.Emit;
-import org.ahocorasick.trie.Trie;
-import org.ahocorasick.trie.Trie.TrieBuilder;
 import org.apache.commons.collections4.CollectionUtils;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
+import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.Maps;
 
 import io.github.valters.xsdiff.report.HtmlContentOutput;
+import io.github.valters.xsdiff.report.NodeText;
 import io.github.valters.xsdiff.report.NodeToString;
 import io.github.valters.xsdiff.report.XmlDomUtils;
 
@@ -38,17 +45,100 @@ import io.github.valters.xsdiff.report.XmlDomUtils;
 public class SemanticDiffFormatter {
 
     private final XmlDomUtils xmlDomUtils = new XmlDomUtils();
-    private final NodeToString printNode = new NodeToString();
+    private final NodeToString printNode;
 
     private final Map<String, NodeChangesHolder> nodeChanges = Maps.newLinkedHashMap();
 
+    /** node texts of all holders, each distinct text stored once */
+    private final TextPool texts = new TextPool();
+
     private HtmlContentOutput output;
 
+    /** views to produce for each change */
+    private Set<Renderer> renderers = EnumSet.allOf( Renderer.class );
+
+    /** render views of changes on this pool, when set */
+    private ForkJoinPool pool;
+
+    /** limits of text diff views; views without a budget are unlimited */
+    private final Map<Renderer, RenderBudget> budgets = new EnumMap<>( Renderer.class );
+
+    /** runs time limited views; when not given, one is created for each {@link #printDiff(HtmlContentOutput)} */
+    private RenderRunner runner;
+
+    /** set when a time limited view was abandoned, and a fallback shown instead */
+    private final AtomicBoolean viewsAbandoned = new AtomicBoolean();
+
+    public SemanticDiffFormatter() {
+        this( new NodeToString() );
+    }
+
+    /** @param printNode serializer shared with the diff producing the changes */
+    public SemanticDiffFormatter( final NodeToString printNode ) {
+        this.printNode = printNode;
+    }
+
+    /** produce only these views of changes: skipping slow ones (daisy) makes report faster */
+    public SemanticDiffFormatter withRenderers( final Set<Renderer> renderers ) {
+        this.renderers = EnumSet.copyOf( renderers );
+        return this;
+    }
+
+    /** produce views of changes in parallel; report stays the same as when produced on single thread */
+    public SemanticDiffFormatter withParallelism( final ForkJoinPool pool ) {
+        this.pool = pool;
+        return this;
+    }
+
+    /**
+     * limit time and input size of a text diff view (histogram, daisy or wikEd). when the budget is exceeded, the view is
+     * replaced by a note and the histogram view (or nothing, for the histogram view itself).
+     */
+    public SemanticDiffFormatter withBudget( final Renderer renderer, final RenderBudget budget ) {
+        Preconditions.checkArgument( renderer != Renderer.SEMANTIC, "semantic view has no budget" );
+        this.budgets.put( renderer, budget );
+        return this;
+    }
+
+    /** share runner of time limited views with other reports, so that at most its number of threads are busy with them */
+    public SemanticDiffFormatter withRenderRunner( final RenderRunner runner ) {
+        this.runner = runner;
+        return this;
+    }
+
+    /** @return true if report shows a fallback for a view that ran out of time: another run may produce a different report */
+    public boolean hasAbandonedViews() {
+        return viewsAbandoned.get();
+    }
+
     public void printDiff( final HtmlContentOutput output ) {
         this.output = output;
 
-        output.write( "++ semantic adds ; removes --" );
-        printAllChanges();
+        // changes are all marked: documents and their serialized strings need not be kept any longer
+        for( final NodeChangesHolder changes : nodeChanges.values() ) {
+            changes.releaseNodes();
+        }
+        texts.compact();
+
+        final RenderRunner sharedRunner = runner;
+        if( runner == null && budgets.values().stream().anyMatch( RenderBudget::isTimeLimited ) ) {
+            runner = new RenderRunner( pool != null ? pool.getParallelism() : 1 );
+        }
+        try {
+            output.write( "++ semantic adds ; removes --" );
+            if( pool != null && nodeChanges.size() > 1 ) {
+                printAllChangesInParallel();
+            }
+            else {
+                printAllChanges();
+            }
+        }
+        finally {
+            if( runner != sharedRunner ) {
+                runner.close();
+                runner = sharedRunner;
+            }
+        }
     }
 
     private void printAllChanges() {
@@ -57,85 +147,147 @@ public class SemanticDiffFormatter {
         }
     }
 
+    /**
+     * views of each holder are produced into buffers on the pool, then written out in holder order. only a window of holders
+     * is buffered at a time, so memory use does not grow with number of changes.
+     */
+    private void printAllChangesInParallel() {
+        if( renderers.contains( Renderer.WIKED ) ) {
+            for( final NodeChangesHolder changes : nodeChanges.values() ) {
+                changes.getWikedDiff(); // wikEd element ids are numbered when created: keep them in holder order
+            }
+        }
+
+        final int window = pool.getParallelism() * 4;
+        final Deque<ForkJoinTask<BufferedChanges>> rendering = new ArrayDeque<>();
+        final Iterator<Map.Entry<String, NodeChangesHolder>> holders = nodeChanges.entrySet().iterator();
+        while( holders.hasNext() || ! rendering.isEmpty() ) {
+            while( holders.hasNext() && rendering.size() < window ) {
+                final Map.Entry<String, NodeChangesHolder> entry = holders.next();
+                rendering.add( pool.submit( () -> new BufferedChanges( entry.getKey(), entry.getValue() ) ) );
+            }
+            rendering.poll().join().write();
+        }
+    }
+
+    /** views of one holder, produced ahead of time */
+    private class BufferedChanges {
+        private final DiffOutputBuffer semantic = new DiffOutputBuffer();
+        private final DiffOutputBuffer histogram = new DiffOutputBuffer();
+        private final SaxEventBuffer daisy = new SaxEventBuffer();
+        private final SaxEventBuffer wiked = new SaxEventBuffer();
+
+        BufferedChanges( final String xpath, final SemanticNodeChanges changes ) {
+            if( renderers.contains( Renderer.SEMANTIC ) ) {
+                printDiff( xpath, changes, semantic );
+            }
+            if( renderers.contains( Renderer.HISTOGRAM ) ) {
+                histogramDiff( changes ).printDiff( histogram );
+            }
+            if( renderers.contains( Renderer.DAISY ) ) {
+                daisyDiff( changes ).printDiff( daisy );
+            }
+            if( renderers.contains( Renderer.WIKED ) ) {
+                wikedDiff( changes ).printDiff( wiked );
+            }
+        }
+
+        void write() {
+            output.writeTab( renderers, semantic::replay, histogram::replay, daisy::replay, wiked::replay );
+        }
+    }
+
     /** produce actual output */
     public void printChanges( final String xpath, final SemanticNodeChanges changes ) {
 
-        output.writeTab( semanticOutput -> printDiff( xpath, changes, semanticOutput ),
-            histogramOutput -> changes.getHistogramDiff().printDiff( histogramOutput ),
-            daisyOutput -> changes.getDaisyDiff().printDiff( daisyOutput ),
-            wikedOutput -> changes.getWikedDiff().printDiff( wikedOutput )
+        output.writeTab( renderers, semanticOutput -> printDiff( xpath, changes, semanticOutput ),
+            histogramOutput -> histogramDiff( changes ).printDiff( histogramOutput ),
+            daisyOutput -> daisyDiff( changes ).printDiff( daisyOutput ),
+            wikedOutput -> wikedDiff( changes ).printDiff( wikedOutput )
         );
 
       }
 
-    public void printPartRemoved( final String text, final SemanticNodeChanges changes, final DiffOutput output ) {
+    private RenderBudget budget( final Renderer renderer ) {
+        return budgets.getOrDefault( renderer, RenderBudget.UNLIMITED );
+    }
 
-        final TrieBuilder trie = Trie.builder().removeOverlaps();
-        for( final String part : changes.getRemovedNodes() ) {
-            trie.addKeyword(part);
-        }
-        for( final String part : changes.getNodeWithRemovedAttributes() ) {
-            trie.addKeyword(part);
-        }
-        final Collection<Emit> emits = trie.build().parseText( text );
+    private static long inputLength( final SemanticNodeChanges changes ) {
+        return changes.getParentTextLength();
+    }
+
+    private DiffOutputFormatter histogramDiff( final SemanticNodeChanges changes ) {
+        return BudgetedFormatter.output( Renderer.HISTOGRAM.getLabel(), changes.getHistogramDiff(), budget( Renderer.HISTOGRAM ), inputLength( changes ), runner, this::abandoned );
+    }
+
+    private ContentHandlerFormatter daisyDiff( final SemanticNodeChanges changes ) {
+        return BudgetedFormatter.content( Renderer.DAISY.getLabel(), changes.getDaisyDiff(), budget( Renderer.DAISY ), inputLength( changes ), fallbackDiff( changes ), runner, this::abandoned );
+    }
+
+    private ContentHandlerFormatter wikedDiff( final SemanticNodeChanges changes ) {
+        return BudgetedFormatter.content( Renderer.WIKED.getLabel(), changes.getWikedDiff(), budget( Renderer.WIKED ), inputLength( changes ), fallbackDiff( changes ), runner, this::abandoned );
+    }
+
+    /**
+     * own histogram formatter (within histogram budget), so that it does not share state with the one of histogram tab.
+     * parent texts are only decoded if the fallback is actually shown.
+     */
+    private DiffOutputFormatter fallbackDiff( final SemanticNodeChanges changes ) {
+        return output -> {
+            final String controlText = changes.getControlParentNodeNext();
+            final String testText = changes.getTestParentNodeNext();
+            final DiffOutputFormatter histogram = controlText == null || testText == null ? EmptyDiff.INSTANCE : new HistogramDiffFormatter( controlText, testText );
+            BudgetedFormatter.output( Renderer.HISTOGRAM.getLabel(), histogram, budget( Renderer.HISTOGRAM ), inputLength( changes ), runner, this::abandoned ).printDiff( output );
+        };
+    }
+
+    private void abandoned() {
+        viewsAbandoned.set( true );
+    }
+
+    public void printPartRemoved( final String text, final SemanticNodeChanges changes, final DiffOutput output ) {
 
         int prevFragment = 0;
-        for( final Emit emit : emits ) {
-            final String clearPartBefore = text.substring( prevFragment, emit.getStart() );
+        for( final KeywordMatcher.Match match : changes.getRemovedKeywords().match( text ) ) {
+            final String clearPartBefore = text.substring( prevFragment, match.getStart() );
             output.clearPart( clearPartBefore );
-            final String nodeText = emit.getKeyword();
+            final String nodeText = match.getKeyword();
             // check if we need to go deeper
             final Set<String> attrFragments = changes.getRemovedAttributesForNode( nodeText );
             if( CollectionUtils.isEmpty( attrFragments ) ) {
                 output.removedPart( nodeText );
             }
             else {
-                printAttributeHighlights( nodeText, attrFragments, fragment -> output.removedPart( fragment ) );
+                printAttributeHighlights( nodeText, changes.getRemovedAttributeKeywords( nodeText ), fragment -> output.removedPart( fragment ), output );
             }
 
-            prevFragment = emit.getEnd()+1;
+            prevFragment = match.getEnd();
         }
 
         final String clearPartAfter = text.substring( prevFragment, text.length() );
         output.clearPart( clearPartAfter );
     }
 
-    private void printAttributeHighlights( final String text, final Set<String> fragments, final Consumer<String> toPrint ) {
-        final TrieBuilder trie = Trie.builder().removeOverlaps();
-        for( final String part : fragments ) {
-            trie.addKeyword(part);
-        }
-
-        final Collection<Emit> emits = trie.build().parseText( text );
-
+    private static void printAttributeHighlights( final String text, final KeywordMatcher fragments, final Consumer<String> toPrint, final DiffOutput output ) {
         int prevFragment = 0;
-        for( final Emit emit : emits ) {
-            final String clearPartBefore = text.substring( prevFragment, emit.getStart() );
+        for( final KeywordMatcher.Match match : fragments.match( text ) ) {
+            final String clearPartBefore = text.substring( prevFragment, match.getStart() );
             output.clearPart( clearPartBefore );
-            final String fragText = emit.getKeyword();
+            final String fragText = match.getKeyword();
             toPrint.accept( fragText );
 
-            prevFragment = emit.getEnd()+1;
+            prevFragment = match.getEnd();
         }
         final String clearPartAfter = text.substring( prevFragment, text.length() );
         output.clearPart( clearPartAfter );
     }
 
     public void printPartAdded( final String text, final SemanticNodeChanges changes, final DiffOutput output ) {
-        final TrieBuilder trie = Trie.builder().removeOverlaps();
-        for( final String part : changes.getAddedNodes() ) {
-            trie.addKeyword(part);
-        }
-        for( final String part : changes.getNodesWithAddedAttributes() ) {
-            trie.addKeyword( part );
-        }
-        final Collection<Emit> emits = trie.build().parseText( text );
-
         int prevFragment = 0;
-        for( final Emit emit : emits ) {
-            final String clearPartBefore = text.substring( prevFragment, emit.getStart() );
+        for( final KeywordMatcher.Match match : changes.getAddedKeywords().match( text ) ) {
+            final String clearPartBefore = text.substring( prevFragment, match.getStart() );
             output.clearPart( clearPartBefore );
-            final String nodeText = emit.getKeyword();
+            final String nodeText = match.getKeyword();
             // check if we need to go deeper
             final Set<String> attrFragments = changes.getAddedAttributesForNode( nodeText );
 
@@ -143,10 +295,10 @@ public class SemanticDiffFormatter {
                 output.addedPart( nodeText );
             }
             else {
-                printAttributeHighlights( nodeText, attrFragments, fragment -> output.addedPart( fragment ) );
+                printAttributeHighlights( nodeText, changes.getAddedAttributeKeywords( nodeText ), fragment -> output.addedPart( fragment ), output );
             }
 
-            prevFragment = emit.getEnd()+1;
+            prevFragment = match.getEnd();
         }
 
         final String clearPartAfter = text.substring( prevFragment, text.length() );
@@ -163,7 +315,7 @@ public class SemanticDiffFormatter {
             final String nodeText = changes.getTestParentNodeNext();
             if( Strings.isNullOrEmpty( nodeText ) ) {
                 output.clearPart( "NULL TEXT" );
-            } else {
+            } else if( ! printPartsAt( nodeText, changes.getAddedPartSpans(), output::addedPart, output ) ) {
                 printPartAdded( nodeText, changes, output );
             }
         }
@@ -176,12 +328,35 @@ public class SemanticDiffFormatter {
             final String nodeText = changes.getControlParentNodeNext();
             if( Strings.isNullOrEmpty( nodeText ) ) {
                 output.clearPart( "NULL TEXT" );
-            } else {
+            } else if( ! printPartsAt( nodeText, changes.getRemovedPartSpans(), output::removedPart, output ) ) {
                 printPartRemoved( nodeText, changes, output );
             }
         }
     }
 
+    /**
+     * highlight changed nodes and attributes by their position in parent text: no text search, and identical siblings are told apart.
+     * @return false, if position of some part is not known: caller should search for changed text instead.
+     */
+    private static boolean printPartsAt( final String text, final int[] spans, final Consumer<String> toPrint, final DiffOutput output ) {
+        if( spans == null ) {
+            return false;
+        }
+
+        int prevFragment = 0;
+        for( int i = 0; i < spans.length; i += 2 ) {
+            final int start = spans[i];
+            if( start < prevFragment ) {
+                continue; // inside a part that is already highlighted
+            }
+            output.clearPart( text.substring( prevFragment, start ) );
+            toPrint.accept( text.substring( start, spans[i + 1] ) );
+            prevFragment = spans[i + 1];
+        }
+        output.clearPart( text.substring( prevFragment ) );
+        return true;
+    }
+
     /** create holder on the fly for certain add/remove operations
      * @param opType make sure we can have a holder for each add/remove because parent text is different
      */
@@ -207,44 +382,63 @@ public class SemanticDiffFormatter {
         return updateHolder( addChangeHolder( parentXpath ), opType, getNodeText( parentXpath, parentDoc ) );
     }
 
-    private String getNodeText( final String parentXpath, final Document parentDoc ) {
+    private NodeText getNodeText( final String parentXpath, final Document parentDoc ) {
         if( parentDoc == null ) {
             return null;
         }
-        return printNode.nodeToString( xmlDomUtils.findNode( parentDoc, parentXpath ) );
+        return printNode.nodeToText( xmlDomUtils.findNode( parentDoc, parentXpath ) );
     }
 
-    /** @return false, if change could not be posted (parent holder did not exist). caller should print change explicitly. */
+    /** @deprecated removed part is highlighted by text search; use {@link #markNodeRemoved(String, Node, String, Document)} */
+    @Deprecated
     public boolean markNodeRemoved( final String parentXpath, final String nodeText, final Document parentDoc ) {
+        return markNodeRemoved( parentXpath, null, nodeText, parentDoc );
+    }
+
+    /** @deprecated added part is highlighted by text search; use {@link #markNodeAdded(String, Node, String, Document)} */
+    @Deprecated
+    public boolean markNodeAdded( final String parentXpath, final String nodeText, final Document parentDoc ) {
+        return markNodeAdded( parentXpath, null, nodeText, parentDoc );
+    }
+
+    /** @return false, if change could not be posted (parent holder did not exist). caller should print change explicitly. */
+    public boolean markNodeRemoved( final String parentXpath, final Node node, final String nodeText, final Document parentDoc ) {
         final NodeChangesHolder changeHolder = getOrAddHolder( parentXpath, parentDoc, NodeChangesHolder.OpType.REMOVED );
         if( changeHolder == null ) {
             return false;
         }
 
-        changeHolder.removedNode( nodeText );
+        changeHolder.removedNode( node, nodeText );
         return true;
     }
 
     /** @return false, if change could not be posted (parent holder did not exist). caller should print change explicitly. */
-    public boolean markNodeAdded( final String parentXpath, final String nodeText, final Document parentDoc ) {
+    public boolean markNodeAdded( final String parentXpath, final Node node, final String nodeText, final Document parentDoc ) {
         final NodeChangesHolder changeHolder = getOrAddHolder( parentXpath, parentDoc, NodeChangesHolder.OpType.ADDED );
         if( changeHolder == null ) {
             return false;
         }
 
-        changeHolder.addedNode( nodeText );
+        changeHolder.addedNode( node, nodeText );
         return true;
     }
 
     public NodeChangesHolder addChangeHolder( final String key ) {
         NodeChangesHolder holder = nodeChanges.get( key );
         if( holder == null ) {
-            holder = new NodeChangesHolder( key );
+            holder = new NodeChangesHolder( key, texts );
             nodeChanges.put( key, holder );
         }
         return holder;
     }
 
+    public NodeChangesHolder updateHolder( final NodeChangesHolder holder, final NodeChangesHolder.OpType opType, final NodeText nodeText ) {
+        holder.addParentNodeText( opType, nodeText );
+        return holder;
+    }
+
+    /** @deprecated text without positions: changed parts are highlighted by text search; use {@link #updateHolder(NodeChangesHolder, NodeChangesHolder.OpType, NodeText)} */
+    @Deprecated
     public NodeChangesHolder updateHolder( final NodeChangesHolder holder, final NodeChangesHolder.OpType opType, final String nodeText ) {
         holder.addParentNodeText( opType, nodeText );
         return holder;
@@ -17,6 +17,8 @@ package io.github.valters.xsdiff.format;
 import java.util.List;
 import java.util.Set;
 
+import com.google.common.collect.Iterables;
+
 /** accumulate changes done to xml node, then process them at same time */
 public interface SemanticNodeChanges {
 
@@ -24,6 +26,23 @@ public interface SemanticNodeChanges {
 
     String getTestParentNodeNext();
 
+    /** @return characters of control and test parent texts together, without decoding them */
+    default long getParentTextLength() {
+        final String control = getControlParentNodeNext();
+        final String test = getTestParentNodeNext();
+        return ( control == null ? 0 : control.length() ) + ( test == null ? 0 : test.length() );
+    }
+
+    /** @return [start, end) pairs of added nodes and attributes in test parent text, ordered by start; null if some position is not known */
+    default int[] getAddedPartSpans() {
+        return null;
+    }
+
+    /** @return [start, end) pairs of removed nodes and attributes in control parent text, ordered by start; null if some position is not known */
+    default int[] getRemovedPartSpans() {
+        return null;
+    }
+
     List<String> getAddedNodes();
     Set<String> getNodesWithAddedAttributes();
     Set<String> getAddedAttributesForNode(String nodeText);
@@ -32,6 +51,24 @@ public interface SemanticNodeChanges {
     Set<String> getNodeWithRemovedAttributes();
     Set<String> getRemovedAttributesForNode(String nodeText);
 
+    /** @return matcher for added nodes and nodes with added attributes, reused for every highlight pass */
+    default KeywordMatcher getAddedKeywords() {
+        return KeywordMatcher.of( Iterables.concat( getAddedNodes(), getNodesWithAddedAttributes() ) );
+    }
+    /** @return matcher for attributes added to the node */
+    default KeywordMatcher getAddedAttributeKeywords(String nodeText) {
+        return KeywordMatcher.of( getAddedAttributesForNode( nodeText ) );
+    }
+
+    /** @return matcher for removed nodes and nodes with removed attributes, reused for every highlight pass */
+    default KeywordMatcher getRemovedKeywords() {
+        return KeywordMatcher.of( Iterables.concat( getRemovedNodes(), getNodeWithRemovedAttributes() ) );
+    }
+    /** @return matcher for attributes removed from the node */
+    default KeywordMatcher getRemovedAttributeKeywords(String nodeText) {
+        return KeywordMatcher.of( getRemovedAttributesForNode( nodeText ) );
+    }
+
     /** produce git-style diff */
     DiffOutputFormatter getHistogramDiff();
 
@@ -0,0 +1,109 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package io.github.valters.xsdiff.format;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Node texts of one diff, shared by all change holders: each distinct text is stored once, and referred to by an int handle.
+ * <p>
+ * While diff runs, the pool keeps the very strings it was given (they are also held by the serializer's memo, so nothing is
+ * copied). When diff is done, {@link #compact()} turns them into UTF-8 bytes; texts are decoded again only when the report is rendered.
+ */
+public final class TextPool {
+
+    /** handle of null text */
+    public static final int NONE = -1;
+
+    /** texts, until compacted */
+    private List<String> strings = new ArrayList<>();
+
+    /** text to handle, until compacted */
+    private Map<String, Integer> handles = new HashMap<>();
+
+    /** texts, once compacted */
+    private byte[][] texts;
+
+    /** character length of each text, once compacted */
+    private int[] lengths;
+
+    /**
+     * @return handle of the text, same for equal texts
+     * @throws IllegalStateException if pool was already compacted
+     */
+    public int add( final String text ) {
+        if( text == null ) {
+            return NONE;
+        }
+        if( strings == null ) {
+            throw new IllegalStateException( "Texts were already compacted" );
+        }
+        return handles.computeIfAbsent( text, key -> {
+            strings.add( text );
+            return strings.size() - 1;
+        } );
+    }
+
+    /** keep texts as UTF-8 bytes from now on; no texts can be added after this */
+    public void compact() {
+        if( strings == null ) {
+            return;
+        }
+        texts = new byte[strings.size()][];
+        lengths = new int[strings.size()];
+        for( int i = 0; i < texts.length; i++ ) {
+            texts[i] = strings.get( i ).getBytes( StandardCharsets.UTF_8 );
+            lengths[i] = strings.get( i ).length();
+        }
+        strings = null;
+        handles = null;
+    }
+
+    /** @return decoded text */
+    public String get( final int handle ) {
+        if( handle == NONE ) {
+            return null;
+        }
+        if( strings != null ) {
+            return strings.get( handle );
+        }
+        return new String( texts[handle], StandardCharsets.UTF_8 );
+    }
+
+    /** @return length of text in characters, without decoding it; 0 for null text */
+    public int length( final int handle ) {
+        if( handle == NONE ) {
+            return 0;
+        }
+        if( strings != null ) {
+            return strings.get( handle ).length();
+        }
+        return lengths[handle];
+    }
+
+    /** @return true for null or empty text */
+    public boolean isEmpty( final int handle ) {
+        return length( handle ) == 0;
+    }
+
+    /** @return how many distinct texts are kept */
+    public int size() {
+        return strings != null ? strings.size() : texts.length;
+    }
+}
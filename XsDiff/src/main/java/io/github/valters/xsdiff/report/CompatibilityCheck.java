@@ -0,0 +1,259 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package io.github.valters.xsdiff.report;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.xml.XMLConstants;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xmlunit.diff.Comparison;
+import org.xmlunit.diff.ComparisonController;
+import org.xmlunit.diff.ComparisonListener;
+import org.xmlunit.diff.ComparisonResult;
+import org.xmlunit.diff.ComparisonType;
+import org.xmlunit.diff.Difference;
+
+/**
+ * Headless comparison: classifies each difference as added, removed or modified, by kind of top-level schema component, and
+ * gives an overall verdict, without serializing nodes or writing a report.
+ * <p>
+ * A child that only moved because siblings before it were added or removed is not a change: order counts only when the
+ * child's position among matched siblings differs.
+ * <p>
+ * Comparison stops as soon as the verdict reaches the given level, because later differences can not lower it: the
+ * verdict is exact when diffing ran to the end, and a lower bound otherwise. Not thread safe: do not use with parallel diffing.
+ */
+public class CompatibilityCheck implements ComparisonListener, ComparisonController {
+
+    /** overall outcome, from best to worst */
+    public enum Verdict {
+        /** no differences */
+        IDENTICAL,
+        /** only changes that existing instance documents and consumers should not notice: new optional parts, documentation */
+        ADDITIVE,
+        /** anything else */
+        BREAKING
+    }
+
+    /** what happened to a node */
+    public enum Change {
+        ADDED, REMOVED, MODIFIED
+    }
+
+    private static final String ROOT_KIND = "schema";
+
+    private final Verdict stopAt;
+
+    private IgnoreRules ignoreRules = IgnoreRules.NONE;
+
+    private Verdict verdict = Verdict.IDENTICAL;
+
+    /** component kind (complexType, element...) to change counts */
+    private final Map<String, Map<Change, Integer>> changes = new TreeMap<>();
+
+    /** control parent to its children that changed place among matched siblings */
+    private final Map<Node, Set<Node>> movedChildren = new HashMap<>();
+
+    /** @param stopAt stop diffing when verdict reaches this level */
+    public CompatibilityCheck( final Verdict stopAt ) {
+        this.stopAt = stopAt;
+    }
+
+    /** leave parts of schemas out of comparison */
+    public CompatibilityCheck withIgnoreRules( final IgnoreRules ignoreRules ) {
+        this.ignoreRules = ignoreRules;
+        return this;
+    }
+
+    /** compare the documents, until verdict is decided */
+    public Verdict check( final Document controlDoc, final Document testDoc ) {
+        new XmlSchemaDiffBuilder().withIgnoreRules( ignoreRules ).withComparisonController( this ).compare( controlDoc, testDoc, this );
+        return verdict;
+    }
+
+    public Verdict getVerdict() {
+        return verdict;
+    }
+
+    /** @return counts of changes, by component kind */
+    public Map<String, Map<Change, Integer>> getChanges() {
+        return changes;
+    }
+
+    @Override
+    public void comparisonPerformed( final Comparison comparison, final ComparisonResult outcome ) {
+        final ComparisonType type = comparison.getType();
+        if( type == ComparisonType.CHILD_NODELIST_LENGTH || type == ComparisonType.ELEMENT_NUM_ATTRIBUTES ) {
+            return; // always comes with lookup differences of the nodes themselves
+        }
+        if( type == ComparisonType.CHILD_NODELIST_SEQUENCE && ! isMoved( comparison.getControlDetails().getTarget(), comparison.getTestDetails().getTarget() ) ) {
+            return; // index shifted by additions or removals before it
+        }
+
+        final Change change = change( comparison );
+        final Node node = change == Change.ADDED ? comparison.getTestDetails().getTarget() : comparison.getControlDetails().getTarget();
+        changes.computeIfAbsent( componentKind( node ), kind -> new EnumMap<>( Change.class ) ).merge( change, 1, Integer::sum );
+
+        final Verdict found = isBreaking( comparison, change, node ) ? Verdict.BREAKING : Verdict.ADDITIVE;
+        if( found.compareTo( verdict ) > 0 ) {
+            verdict = found;
+        }
+    }
+
+    @Override
+    public boolean stopDiffing( final Difference difference ) {
+        return verdict.compareTo( stopAt ) >= 0;
+    }
+
+    /** @return true if control child has a different place than its test pair among the matched children of their parents */
+    private boolean isMoved( final Node control, final Node test ) {
+        return movedChildren.computeIfAbsent( control.getParentNode(), parent -> movedChildren( parent, test.getParentNode() ) ).contains( control );
+    }
+
+    private Set<Node> movedChildren( final Node controlParent, final Node testParent ) {
+        final List<Node> controlChildren = compared( controlParent );
+        final List<Node> testChildren = compared( testParent );
+
+        final Map<Node, Node> pairs = new HashMap<>();
+        for( final Map.Entry<Node, Node> pair : new SchemaNodeMatcher().match( controlChildren, testChildren ) ) {
+            pairs.put( pair.getKey(), pair.getValue() );
+        }
+        final Set<Node> paired = new HashSet<>( pairs.values() );
+        final Map<Node, Integer> testRanks = new HashMap<>();
+        for( final Node child : testChildren ) {
+            if( paired.contains( child ) ) {
+                testRanks.put( child, testRanks.size() );
+            }
+        }
+
+        final Set<Node> moved = new HashSet<>();
+        int rank = 0;
+        for( final Node child : controlChildren ) {
+            final Node pair = pairs.get( child );
+            if( pair != null ) {
+                if( testRanks.get( pair ) != rank ) {
+                    moved.add( child );
+                }
+                rank++;
+            }
+        }
+        return moved;
+    }
+
+    /** @return children that the diff engine compares */
+    private List<Node> compared( final Node parent ) {
+        final List<Node> children = new ArrayList<>();
+        for( Node child = parent.getFirstChild(); child != null; child = child.getNextSibling() ) {
+            if( child.getNodeType() != Node.DOCUMENT_TYPE_NODE && ! ignoreRules.isIgnored( child ) ) {
+                children.add( child );
+            }
+        }
+        return children;
+    }
+
+    private static Change change( final Comparison comparison ) {
+        if( comparison.getControlDetails().getTarget() == null ) {
+            return Change.ADDED;
+        }
+        if( comparison.getTestDetails().getTarget() == null ) {
+            return Change.REMOVED;
+        }
+        if( comparison.getType() == ComparisonType.ATTR_NAME_LOOKUP ) {
+            return comparison.getControlDetails().getValue() == null ? Change.ADDED : comparison.getTestDetails().getValue() == null ? Change.REMOVED : Change.MODIFIED;
+        }
+        return Change.MODIFIED;
+    }
+
+    private static boolean isBreaking( final Comparison comparison, final Change change, final Node node ) {
+        if( comparison.getType() == ComparisonType.NAMESPACE_PREFIX || insideAnnotation( node ) ) {
+            return false;
+        }
+        if( comparison.getType() == ComparisonType.CHILD_NODELIST_SEQUENCE ) {
+            return isSchemaElement( node.getParentNode(), "sequence" ); // order only matters in a sequence
+        }
+        if( comparison.getType() == ComparisonType.CHILD_LOOKUP && change == Change.ADDED ) {
+            return ! isOptionalAddition( node );
+        }
+        return true;
+    }
+
+    /** new top-level component, optional element or attribute, or new enumeration value */
+    private static boolean isOptionalAddition( final Node node ) {
+        if( node.getNodeType() != Node.ELEMENT_NODE ) {
+            return false;
+        }
+        final Element element = (Element) node;
+        if( isTopLevel( element ) || isSchemaElement( element, "enumeration" ) ) {
+            return true;
+        }
+        if( isSchemaElement( element, "element" ) || isSchemaElement( element, "group" ) || isSchemaElement( element, "any" )
+                || isSchemaElement( element, "sequence" ) || isSchemaElement( element, "choice" ) ) {
+            return "0".equals( element.getAttribute( "minOccurs" ) );
+        }
+        if( isSchemaElement( element, "attribute" ) || isSchemaElement( element, "attributeGroup" ) ) {
+            return ! "required".equals( element.getAttribute( "use" ) );
+        }
+        return isSchemaElement( element, "anyAttribute" );
+    }
+
+    private static boolean insideAnnotation( final Node node ) {
+        for( Node n = owner( node ); n != null; n = n.getParentNode() ) {
+            if( isSchemaElement( n, "annotation" ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** @return local name of the top-level schema component the node belongs to */
+    private static String componentKind( final Node node ) {
+        Node n = owner( node );
+        while( n != null && n.getParentNode() != null && n.getParentNode().getNodeType() == Node.ELEMENT_NODE && n.getParentNode().getParentNode() != null
+                && n.getParentNode().getParentNode().getNodeType() != Node.DOCUMENT_NODE ) {
+            n = n.getParentNode();
+        }
+        if( n == null || n.getNodeType() != Node.ELEMENT_NODE || ! isTopLevel( n ) ) {
+            return ROOT_KIND;
+        }
+        return n.getLocalName();
+    }
+
+    /** direct child of the schema element */
+    private static boolean isTopLevel( final Node node ) {
+        final Node parent = node.getParentNode();
+        return parent != null && parent.getNodeType() == Node.ELEMENT_NODE
+                && parent.getParentNode() != null && parent.getParentNode().getNodeType() == Node.DOCUMENT_NODE;
+    }
+
+    private static Node owner( final Node node ) {
+        return node instanceof Attr ? ( (Attr) node ).getOwnerElement() : node;
+    }
+
+    private static boolean isSchemaElement( final Node node, final String localName ) {
+        return node != null && node.getNodeType() == Node.ELEMENT_NODE
+                && XMLConstants.W3C_XML_SCHEMA_NS_URI.equals( node.getNamespaceURI() ) && localName.equals( node.getLocalName() );
+    }
+}
@@ -15,6 +15,8 @@
 package io.github.valters.xsdiff.report;
 
 import java.io.File;
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
@@ -32,6 +34,7 @@ import org.xml.sax.helpers.AttributesImpl;
 import com.google.common.base.Preconditions;
 
 import io.github.valters.xsdiff.format.DiffOutput;
+import io.github.valters.xsdiff.format.Renderer;
 
 /** provides couple helpers to make html writing easier */
 public class HtmlContentOutput implements DiffOutput {
@@ -293,42 +296,59 @@ public class HtmlContentOutput implements DiffOutput {
             final Consumer<DiffOutput> histogramOutput,
             final Consumer<ContentHandler> daisyOutput,
             final Consumer<ContentHandler> wikedOutput ) {
+        writeTab( EnumSet.allOf( Renderer.class ), semanticOutput, histogramOutput, daisyOutput, wikedOutput );
+    }
+
+    /** @param renderers only these tabs are written (and their output produced) */
+    public void writeTab( final Set<Renderer> renderers,
+            final Consumer<DiffOutput> semanticOutput,
+            final Consumer<DiffOutput> histogramOutput,
+            final Consumer<ContentHandler> daisyOutput,
+            final Consumer<ContentHandler> wikedOutput ) {
 
         final String tabId = "tab-" + tabCounter.incrementAndGet();
 
         el("div", "class", "tabs", "data-toggle", "tabslet", "data-animation", "true" );
           el( "ul", "class", "horizontal" );
-            el( "li" );
-              el( "a", "href", "#"+tabId+"-1" ); writeRaw("semantic"); _el("a");
-            _el("li");
-            el( "li" );
-              el( "a", "href", "#"+tabId+"-4" ); writeRaw("wikEd"); _el("a");
-            _el( "li" );
-            el( "li" );
-              el( "a", "href", "#"+tabId+"-2" ); writeRaw("histogram"); _el("a");
-            _el("li");
-            el( "li" );
-              el( "a", "href", "#"+tabId+"-3" ); writeRaw("daisy"); _el("a");
-            _el( "li" );
+            tabLink( renderers, Renderer.SEMANTIC, tabId+"-1" );
+            tabLink( renderers, Renderer.WIKED, tabId+"-4" );
+            tabLink( renderers, Renderer.HISTOGRAM, tabId+"-2" );
+            tabLink( renderers, Renderer.DAISY, tabId+"-3" );
           _el( "ul" );
 
-          el("div", "id", ""+tabId+"-1" );
-            el("span"); semanticOutput.accept( this ); _el("span");
-          _el("div");
-
-          el("div", "id", ""+tabId+"-2" );
-            histogramOutput.accept( this );
-          _el("div");
-
-          el("div", "id", ""+tabId+"-3" );
-            daisyOutput.accept( consumer );
-          _el("div");
+          if( renderers.contains( Renderer.SEMANTIC ) ) {
+            el("div", "id", ""+tabId+"-1" );
+              el("span"); semanticOutput.accept( this ); _el("span");
+            _el("div");
+          }
+
+          if( renderers.contains( Renderer.HISTOGRAM ) ) {
+            el("div", "id", ""+tabId+"-2" );
+              histogramOutput.accept( this );
+            _el("div");
+          }
+
+          if( renderers.contains( Renderer.DAISY ) ) {
+            el("div", "id", ""+tabId+"-3" );
+              daisyOutput.accept( consumer );
+            _el("div");
+          }
+
+          if( renderers.contains( Renderer.WIKED ) ) {
+            el("div", "id", ""+tabId+"-4" );
+              wikedOutput.accept( consumer );
+            _el("div");
+          }
 
-          el("div", "id", ""+tabId+"-4" );
-            wikedOutput.accept( consumer );
           _el("div");
 
-          _el("div");
+    }
 
+    private void tabLink( final Set<Renderer> renderers, final Renderer renderer, final String id ) {
+        if( renderers.contains( renderer ) ) {
+            el( "li" );
+              el( "a", "href", "#"+id ); writeRaw( renderer.getLabel() ); _el("a");
+            _el( "li" );
+        }
     }
 }
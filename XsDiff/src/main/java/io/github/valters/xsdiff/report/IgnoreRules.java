@@ -0,0 +1,171 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package io.github.valters.xsdiff.report;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.xml.XMLConstants;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Node;
+
+/**
+ * Parts of schemas that should not be compared at all, compiled once from a rules file, then applied while comparing (as
+ * xmlunit node and attribute filters), so ignored nodes never show up as differences.
+ * <p>
+ * One rule per line, <code>#</code> starts a comment:
+ * <pre>
+ * xs:annotation              schema element (with its subtree), anywhere; "xs:" prefix is optional
+ * complexType name=Legacy*   top-level component of given kind, by name; "*" for any kind; name may use * and ? wildcards
+ * &#64;id                        attribute, on any element
+ * </pre>
+ */
+public final class IgnoreRules {
+
+    /** compare everything */
+    public static final IgnoreRules NONE = new IgnoreRules( Collections.<String>emptySet(), Collections.<String, Pattern>emptyMap(), Collections.<String>emptySet() );
+
+    private static final String ANY_KIND = "*";
+    private static final String NAME_PREFIX = "name=";
+    private static final String SCHEMA_PREFIX = "xs:";
+
+    /** local names of schema elements */
+    private final Set<String> elements;
+
+    /** component kind (or "*") to pattern matching names of ignored components */
+    private final Map<String, Pattern> components;
+
+    /** attribute local names */
+    private final Set<String> attributes;
+
+    private IgnoreRules( final Set<String> elements, final Map<String, Pattern> components, final Set<String> attributes ) {
+        this.elements = elements;
+        this.components = components;
+        this.attributes = attributes;
+    }
+
+    /** read rules file */
+    public static IgnoreRules load( final Path file ) throws IOException {
+        return parse( Files.readAllLines( file, StandardCharsets.UTF_8 ) );
+    }
+
+    /** @throws IllegalArgumentException if a rule is not valid */
+    public static IgnoreRules parse( final Iterable<String> lines ) {
+        final Set<String> elements = new HashSet<>();
+        final Map<String, List<String>> componentPatterns = new HashMap<>();
+        final Set<String> attributes = new HashSet<>();
+
+        for( final String line : lines ) {
+            final int comment = line.indexOf( '#' );
+            final String rule = ( comment >= 0 ? line.substring( 0, comment ) : line ).trim();
+            if( rule.isEmpty() ) {
+                continue;
+            }
+
+            final String[] parts = rule.split( "\\s+" );
+            if( parts.length == 1 && rule.startsWith( "@" ) && rule.length() > 1 ) {
+                attributes.add( rule.substring( 1 ) );
+            }
+            else if( parts.length == 1 ) {
+                elements.add( schemaName( rule ) );
+            }
+            else if( parts.length == 2 && parts[1].startsWith( NAME_PREFIX ) && parts[1].length() > NAME_PREFIX.length() ) {
+                final String kind = ANY_KIND.equals( parts[0] ) ? ANY_KIND : schemaName( parts[0] );
+                componentPatterns.computeIfAbsent( kind, k -> new ArrayList<>() ).add( globToRegex( parts[1].substring( NAME_PREFIX.length() ) ) );
+            }
+            else {
+                throw new IllegalArgumentException( "Not a valid ignore rule: " + line );
+            }
+        }
+
+        final Map<String, Pattern> components = new HashMap<>();
+        for( final Map.Entry<String, List<String>> kind : componentPatterns.entrySet() ) {
+            components.put( kind.getKey(), Pattern.compile( String.join( "|", kind.getValue() ) ) );
+        }
+        return new IgnoreRules( elements, components, attributes );
+    }
+
+    private static String schemaName( final String name ) {
+        return name.startsWith( SCHEMA_PREFIX ) ? name.substring( SCHEMA_PREFIX.length() ) : name;
+    }
+
+    private static String globToRegex( final String glob ) {
+        final StringBuilder regex = new StringBuilder( "(?:" );
+        int start = 0;
+        for( int i = 0; i < glob.length(); i++ ) {
+            final char c = glob.charAt( i );
+            if( c == '*' || c == '?' ) {
+                if( i > start ) {
+                    regex.append( Pattern.quote( glob.substring( start, i ) ) );
+                }
+                regex.append( c == '*' ? ".*" : "." );
+                start = i + 1;
+            }
+        }
+        if( start < glob.length() ) {
+            regex.append( Pattern.quote( glob.substring( start ) ) );
+        }
+        return regex.append( ')' ).toString();
+    }
+
+    public boolean isEmpty() {
+        return elements.isEmpty() && components.isEmpty() && attributes.isEmpty();
+    }
+
+    /** @return true if node (and its subtree) should not be compared */
+    public boolean isIgnored( final Node node ) {
+        if( node.getNodeType() != Node.ELEMENT_NODE || ! XMLConstants.W3C_XML_SCHEMA_NS_URI.equals( node.getNamespaceURI() ) ) {
+            return false;
+        }
+        final String kind = node.getLocalName();
+        if( elements.contains( kind ) ) {
+            return true;
+        }
+        if( components.isEmpty() || ! isTopLevel( node ) ) {
+            return false;
+        }
+        final Node name = node.getAttributes().getNamedItem( "name" );
+        if( name == null ) {
+            return false;
+        }
+        return matches( components.get( kind ), name.getNodeValue() ) || matches( components.get( ANY_KIND ), name.getNodeValue() );
+    }
+
+    /** @return true if attribute should not be compared */
+    public boolean isIgnored( final Attr attr ) {
+        return ! attributes.isEmpty() && attributes.contains( attr.getLocalName() != null ? attr.getLocalName() : attr.getName() );
+    }
+
+    private static boolean matches( final Pattern pattern, final String name ) {
+        return pattern != null && pattern.matcher( name ).matches();
+    }
+
+    /** child of the document element */
+    private static boolean isTopLevel( final Node node ) {
+        final Node parent = node.getParentNode();
+        return parent != null && parent.getParentNode() != null && parent.getParentNode().getNodeType() == Node.DOCUMENT_NODE;
+    }
+}
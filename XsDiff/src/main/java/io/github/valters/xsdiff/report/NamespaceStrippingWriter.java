@@ -0,0 +1,401 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package io.github.valters.xsdiff.report;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import com.google.common.base.Strings;
+
+/**
+ * Prints node as indented XML text with namespace prefixes stripped, writing straight from the DOM into a reused buffer.
+ * Produces same text as {@link TransformToString#nodeToStringClean(Node)} (namespace stripping import followed by
+ * indenting identity transform), but without copying the subtree into a new Document and without a Transformer.
+ * <p>
+ * Layout rules follow the JDK built-in serializer. Content that would need the serializer's more exotic handling
+ * (CDATA, processing instructions, namespaced attributes, nested namespace declarations, control characters)
+ * is not written: {@link #write(Node)} returns null, and caller should use the transformer instead.
+ * <p>
+ * Can also record where each element and attribute went in the text ({@link #write(Node, Map)}), for highlighting changed
+ * nodes by position.
+ */
+public class NamespaceStrippingWriter {
+
+    /** same as {@link XmlDomUtils#setTransformerIndent(javax.xml.transform.Transformer)} */
+    private static final int INDENT_AMOUNT = 4;
+
+    /** serializer uses platform line separator */
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /** {@link TransformToString#importWithoutNamespaces(Node)} wraps non-element nodes into this element */
+    private static final String WRAPPER_ELEMENT = "parent";
+
+    private static final String XMLNS = "xmlns";
+
+    private final StringBuilder out = new StringBuilder( 1024 );
+
+    /** text is held back until next node is seen, because its indentation depends on what follows */
+    private final List<String> pendingText = new ArrayList<>();
+
+    private int depth;
+    private int childNodeNum;
+    private int[] childNodeNumStack = new int[16];
+    private boolean startNewLine;
+    private boolean prevText;
+    private boolean startTagOpen;
+
+    /** where to record node positions, or null */
+    private Map<Node, int[]> spans;
+
+    /** @return serialized text, or null if node contains content that this writer does not reproduce faithfully */
+    public String write( final Node node ) {
+        return write( node, null );
+    }
+
+    /**
+     * @param spans receives [start, end) position in returned text of each element and attribute written (including the node itself)
+     * @return serialized text, or null if node contains content that this writer does not reproduce faithfully
+     */
+    public String write( final Node node, final Map<Node, int[]> spans ) {
+        reset();
+        this.spans = spans;
+        try {
+            switch( node.getNodeType() ) {
+            case Node.ELEMENT_NODE:
+                element( node, true );
+                break;
+            case Node.TEXT_NODE:
+            case Node.COMMENT_NODE:
+                startElement( WRAPPER_ELEMENT );
+                child( node );
+                endElement( WRAPPER_ELEMENT );
+                break;
+            default:
+                return null;
+            }
+            endDocument();
+            return out.toString();
+        }
+        catch( final UnsupportedContent e ) {
+            return null;
+        }
+        finally {
+            this.spans = null;
+            if( out.capacity() > 64 * 1024 ) {
+                out.setLength( 0 );
+                out.trimToSize(); // don't hold on to one huge buffer
+            }
+        }
+    }
+
+    private void reset() {
+        out.setLength( 0 );
+        pendingText.clear();
+        depth = 0;
+        childNodeNum = 0;
+        startNewLine = false;
+        prevText = false;
+        startTagOpen = false;
+    }
+
+    private void element( final Node node, final boolean isRoot ) {
+        final String name = XmlDomUtils.removeNsPrefix( node.getNodeName() );
+        startElement( name );
+        final int start = out.length() - name.length() - 1;
+        attributes( node.getAttributes(), isRoot );
+
+        for( Node child = node.getFirstChild(); child != null; child = child.getNextSibling() ) {
+            child( child );
+        }
+        endElement( name );
+        span( node, start );
+    }
+
+    private void span( final Node node, final int start ) {
+        if( spans != null ) {
+            spans.put( node, new int[] { start, out.length() } );
+        }
+    }
+
+    private void child( final Node child ) {
+        switch( child.getNodeType() ) {
+        case Node.ELEMENT_NODE:
+            element( child, false );
+            break;
+        case Node.TEXT_NODE:
+            characters( child.getNodeValue() );
+            break;
+        case Node.COMMENT_NODE:
+            comment( child.getNodeValue() );
+            break;
+        default:
+            throw new UnsupportedContent();
+        }
+    }
+
+    /** namespace declarations come first, then regular attributes; root "xmlns" is dropped same as by {@link XmlDomUtils#removeXmlNsAttribute(Node)} */
+    private void attributes( final NamedNodeMap attrs, final boolean isRoot ) {
+        if( attrs == null ) {
+            return;
+        }
+
+        final int length = attrs.getLength();
+        for( int i = 0; i < length; i++ ) {
+            final Attr attr = (Attr) attrs.item( i );
+            final String name = attr.getNodeName();
+            if( ! name.startsWith( XMLNS ) ) {
+                continue;
+            }
+            if( ! isRoot || name.length() <= XMLNS.length() + 1 || name.charAt( XMLNS.length() ) != ':' || Strings.isNullOrEmpty( attr.getValue() ) ) {
+                if( isRoot && XMLNS.equals( name ) ) {
+                    continue;
+                }
+                throw new UnsupportedContent(); // nested or default namespace declarations get reshuffled by serializer
+            }
+            attribute( name, attr.getValue() );
+        }
+        for( int i = 0; i < length; i++ ) {
+            final Attr attr = (Attr) attrs.item( i );
+            final String name = attr.getNodeName();
+            if( name.startsWith( XMLNS ) ) {
+                continue;
+            }
+            if( ! Strings.isNullOrEmpty( attr.getNamespaceURI() ) ) {
+                throw new UnsupportedContent();
+            }
+            final int start = out.length() + 1;
+            attribute( name, attr.getValue() );
+            span( attr, start );
+        }
+    }
+
+    private void attribute( final String name, final String value ) {
+        out.append( ' ' ).append( name ).append( "=\"" );
+        escapeAttribute( value );
+        out.append( '"' );
+    }
+
+    private void startElement( final String name ) {
+        childNodeNum++;
+        flushText();
+        closeStartTag();
+
+        if( shouldIndent() && startNewLine ) {
+            indent( depth );
+        }
+        startNewLine = true;
+
+        out.append( '<' ).append( name );
+
+        if( depth == childNodeNumStack.length ) {
+            childNodeNumStack = Arrays.copyOf( childNodeNumStack, depth * 2 );
+        }
+        childNodeNumStack[depth] = childNodeNum;
+        childNodeNum = 0;
+        depth++;
+        prevText = false;
+        startTagOpen = true;
+    }
+
+    private void endElement( final String name ) {
+        flushText();
+
+        if( startTagOpen ) {
+            out.append( "/>" );
+            startTagOpen = false;
+        }
+        else {
+            if( shouldIndent() && ( childNodeNum > 1 || ! prevText ) ) {
+                indent( depth - 1 );
+            }
+            out.append( "</" ).append( name ).append( '>' );
+        }
+
+        depth--;
+        childNodeNum = childNodeNumStack[depth];
+        prevText = false;
+    }
+
+    private void characters( final String text ) {
+        if( text.isEmpty() ) {
+            return;
+        }
+        closeStartTag();
+        pendingText.add( text );
+    }
+
+    private void comment( final String text ) {
+        childNodeNum++;
+        flushText();
+        closeStartTag();
+
+        if( shouldIndent() ) {
+            indent( depth );
+        }
+
+        out.append( "<!--" );
+        final int limit = text.length();
+        boolean wasDash = false;
+        for( int i = 0; i < limit; i++ ) {
+            final char c = text.charAt( i );
+            if( wasDash && c == '-' ) {
+                out.append( " -" ); // serializer breaks up "--"
+            }
+            else {
+                out.append( c );
+            }
+            wasDash = c == '-';
+        }
+        if( limit > 0 && text.charAt( limit - 1 ) == '-' ) {
+            out.append( ' ' );
+        }
+        out.append( "-->" );
+        startNewLine = true;
+    }
+
+    private void endDocument() {
+        flushText();
+        if( ! prevText ) {
+            out.append( LINE_SEPARATOR );
+        }
+    }
+
+    /** text between nodes gets own line when there are sibling nodes, with the leading line breaks dropped */
+    private void flushText() {
+        if( pendingText.isEmpty() ) {
+            return;
+        }
+
+        childNodeNum++;
+        boolean skipNewlines = false;
+        if( shouldIndent() && childNodeNum > 1 ) {
+            indent( depth );
+            startNewLine = true;
+            skipNewlines = true;
+        }
+
+        for( final String text : pendingText ) {
+            int start = 0;
+            while( skipNewlines && start < text.length() && text.charAt( start ) == '\n' ) {
+                start++;
+            }
+            skipNewlines = skipNewlines && start == text.length();
+            if( start < text.length() ) {
+                escapeText( text, start );
+                prevText = true;
+            }
+        }
+        pendingText.clear();
+    }
+
+    private void closeStartTag() {
+        if( startTagOpen ) {
+            out.append( '>' );
+            startTagOpen = false;
+        }
+    }
+
+    private boolean shouldIndent() {
+        return depth > 0;
+    }
+
+    private void indent( final int level ) {
+        if( startNewLine ) {
+            out.append( LINE_SEPARATOR );
+        }
+        for( int i = level * INDENT_AMOUNT; i > 0; i-- ) {
+            out.append( ' ' );
+        }
+    }
+
+    private void escapeText( final String text, final int start ) {
+        for( int i = start; i < text.length(); i++ ) {
+            final char c = text.charAt( i );
+            switch( c ) {
+            case '&':
+                out.append( "&amp;" );
+                break;
+            case '<':
+                out.append( "&lt;" );
+                break;
+            case '>':
+                out.append( "&gt;" );
+                break;
+            case '\n':
+                out.append( LINE_SEPARATOR );
+                break;
+            case '\r':
+                out.append( "&#13;" );
+                break;
+            default:
+                appendPlain( c );
+            }
+        }
+    }
+
+    private void escapeAttribute( final String value ) {
+        for( int i = 0; i < value.length(); i++ ) {
+            final char c = value.charAt( i );
+            switch( c ) {
+            case '&':
+                out.append( "&amp;" );
+                break;
+            case '<':
+                out.append( "&lt;" );
+                break;
+            case '>':
+                out.append( "&gt;" );
+                break;
+            case '"':
+                out.append( "&quot;" );
+                break;
+            case '\n':
+                out.append( "&#10;" );
+                break;
+            case '\r':
+                out.append( "&#13;" );
+                break;
+            case '\t':
+                out.append( "&#9;" );
+                break;
+            default:
+                appendPlain( c );
+            }
+        }
+    }
+
+    /** control characters and surrogates get special treatment by serializer: leave them to it */
+    private void appendPlain( final char c ) {
+        if( ( c < 0x20 && c != '\t' ) || ( c >= 0x7F && c <= 0x9F ) || Character.isSurrogate( c ) || c == '\u2028' ) {
+            throw new UnsupportedContent();
+        }
+        out.append( c );
+    }
+
+    /** content we do not reproduce: fall back to transformer */
+    private static class UnsupportedContent extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedContent() {
+            super( null, null, false, false );
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package io.github.valters.xsdiff.report;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.w3c.dom.Node;
+
+/** Where each descendant element and attribute was written in serialized node text. Kept apart from the text itself, so that the text can be stored elsewhere. */
+public final class NodePositions {
+
+    /** positions are not known */
+    static final NodePositions NONE = new NodePositions( Collections.<Node, int[]>emptyMap() );
+
+    /** node identity to [start, end) in text */
+    private final Map<Node, int[]> spans;
+
+    NodePositions( final Map<Node, int[]> spans ) {
+        this.spans = spans;
+    }
+
+    /** @return false, if node was not written as part of the text (or positions are not known) */
+    public boolean contains( final Node node ) {
+        return spans.containsKey( node );
+    }
+
+    /** @return position of first character of node text */
+    public int getStart( final Node node ) {
+        return spans.get( node )[0];
+    }
+
+    /** @return position after last character of node text */
+    public int getEnd( final Node node ) {
+        return spans.get( node )[1];
+    }
+}
@@ -0,0 +1,53 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package io.github.valters.xsdiff.report;
+
+import java.util.Map;
+
+import org.w3c.dom.Node;
+
+/**
+ * Serialized node text, together with where each descendant element and attribute was written in it, so that a changed
+ * node can be found by position instead of by searching for its text.
+ */
+public final class NodeText {
+
+    private final String text;
+
+    private final NodePositions positions;
+
+    NodeText( final String text, final Map<Node, int[]> spans ) {
+        this.text = text;
+        this.positions = new NodePositions( spans );
+    }
+
+    private NodeText( final String text ) {
+        this.text = text;
+        this.positions = NodePositions.NONE;
+    }
+
+    /** text without positions: for content that was not written by {@link NamespaceStrippingWriter} */
+    static NodeText of( final String text ) {
+        return new NodeText( text );
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public NodePositions getPositions() {
+        return positions;
+    }
+}
@@ -14,6 +14,9 @@
 
 package io.github.valters.xsdiff.report;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
+
 import javax.xml.namespace.QName;
 
 import org.w3c.dom.Attr;
@@ -27,19 +30,107 @@ public class NodeToString {
 
     private final TransformToString transform = new TransformToString();
 
+    /** writes node text directly; transformer is only used for content it does not handle */
+    private final NamespaceStrippingWriter writer = new NamespaceStrippingWriter();
+
+    /** serialized node text, keyed by node identity: only kept while diff is in progress (documents do not change during diff) */
+    private Map<Node, String> memo;
+
+    /** serialized node text with positions of descendants, kept same as {@link #memo} */
+    private Map<Node, NodeText> textMemo;
+
+    /** how many times serialization was avoided by returning memoized text */
+    private int savedSerializations;
+
+    /** start remembering serialized node texts: same parent node gets printed for every change underneath it */
+    public void startMemo() {
+        memo = new IdentityHashMap<>();
+        textMemo = new IdentityHashMap<>();
+    }
+
+    /** forget remembered texts, when diff is done */
+    public void clearMemo() {
+        memo = null;
+        textMemo = null;
+    }
+
+    public int getSavedSerializations() {
+        return savedSerializations;
+    }
+
     /** Remove all possible (invisible) whitespace: including line breaks. used to see if document is actually empty and the alternative printer should be used. */
     public String trim( final String str ) {
         return CharMatcher.invisible().trimFrom( Strings.nullToEmpty( str ) );
     }
 
     public String nodeToString( final Node node ) {
-        final String str = trim( transform.nodeToStringClean( node ) );
+        if( memo == null ) {
+            return serialize( node );
+        }
+
+        final String text = memo.get( node );
+        if( text != null ) {
+            savedSerializations++;
+            return text;
+        }
+        final String str = serialize( node );
+        memo.put( node, str );
+        return str;
+    }
+
+    /** @return same text as {@link #nodeToString(Node)}, with positions of descendant elements and attributes when they are known */
+    public NodeText nodeToText( final Node node ) {
+        if( textMemo == null ) {
+            return serializeWithSpans( node );
+        }
+
+        final NodeText text = textMemo.get( node );
+        if( text != null ) {
+            savedSerializations++;
+            return text;
+        }
+        final NodeText str = serializeWithSpans( node );
+        textMemo.put( node, str );
+        return str;
+    }
+
+    private NodeText serializeWithSpans( final Node node ) {
+        final Map<Node, int[]> spans = new IdentityHashMap<>();
+        final String text = writer.write( node, spans );
+        if( text == null ) {
+            return NodeText.of( nodeToString( node ) );
+        }
+
+        final String str = trim( text );
+        if( Strings.isNullOrEmpty( str ) ) {
+            return NodeText.of( altPrint( node ) );
+        }
+        final int trimmed = text.indexOf( str );
+        if( trimmed > 0 ) {
+            for( final int[] span : spans.values() ) {
+                span[0] -= trimmed;
+                span[1] -= trimmed;
+            }
+        }
+        return new NodeText( str, spans );
+    }
+
+    private String serialize( final Node node ) {
+        final String str = trim( toStringClean( node ) );
         if( ! Strings.isNullOrEmpty( str ) ) {
             return str;
         }
         return altPrint( node ); // is probably attribute
     }
 
+    private String toStringClean( final Node node ) {
+        final String text = writer.write( node );
+        if( text != null ) {
+            return text;
+        }
+        return transform.nodeToStringClean( node );
+    }
+
     /** simple print when clever fails */
     private String altPrint( final Node node ) {
         return "<span>" + node + "</span>";
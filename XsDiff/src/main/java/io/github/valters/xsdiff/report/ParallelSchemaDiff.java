@@ -0,0 +1,371 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package io.github.valters.xsdiff.report;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.dom.DOMSource;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xmlunit.diff.Comparison;
+import org.xmlunit.diff.ComparisonType;
+import org.xmlunit.diff.Diff;
+import org.xmlunit.diff.Difference;
+import org.xmlunit.diff.NodeMatcher;
+import org.xmlunit.diff.XPathContext;
+import org.xmlunit.util.Linqy;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Diffs top-level schema components (children of the document element) as separate tasks on a ForkJoinPool.
+ * <p>
+ * Document element itself, and the pairing of its children, are diffed on the calling thread with children of changed
+ * components hidden. Each changed component pair is diffed on its own copy (DOM implementation is not safe for
+ * concurrent reads), and the resulting comparisons are translated back: xpaths are rebased to the position of the component
+ * in the document, and target nodes are mapped back to the original nodes.
+ * Differences are then merged in the same order that single-threaded xmlunit walk would produce them.
+ */
+final class ParallelSchemaDiff {
+
+    private final XmlSchemaDiffBuilder diffBuilder;
+    private final NodeMatcher nodeMatcher;
+    private final Map<String, String> prefix2uri;
+    private final ForkJoinPool pool;
+
+    ParallelSchemaDiff( final XmlSchemaDiffBuilder diffBuilder, final NodeMatcher nodeMatcher, final Map<String, String> prefix2uri, final ForkJoinPool pool ) {
+        this.diffBuilder = diffBuilder;
+        this.nodeMatcher = nodeMatcher;
+        this.prefix2uri = prefix2uri;
+        this.pool = pool;
+    }
+
+    /** @return null if documents do not have comparable document elements: caller should diff them as a whole */
+    Diff compare( final DOMSource control, final DOMSource test, final Set<Node> identicalSubtrees ) {
+        final Node controlDoc = control.getNode();
+        final Node testDoc = test.getNode();
+        final Map.Entry<Node, Node> roots = matchedDocumentElements( controlDoc, testDoc );
+        if( roots == null || identicalSubtrees.contains( roots.getKey() ) ) {
+            return null; // nothing to split
+        }
+
+        final List<ComponentPair> pairs = pairComponents( controlDoc, roots.getKey(), testDoc, roots.getValue(), identicalSubtrees );
+
+        final List<ForkJoinTask<List<Difference>>> tasks = new ArrayList<>( pairs.size() );
+        for( final ComponentPair pair : pairs ) {
+            if( pair.changed ) {
+                tasks.add( pool.submit( pair::diff ) );
+            }
+            else {
+                tasks.add( null );
+            }
+        }
+
+        // children of changed components are compared by the tasks
+        final Set<Node> hiddenChildren = Sets.newIdentityHashSet();
+        hiddenChildren.addAll( identicalSubtrees );
+        final Map<Node, Integer> pairIndex = new IdentityHashMap<>();
+        for( int i = 0; i < pairs.size(); i++ ) {
+            final ComponentPair pair = pairs.get( i );
+            pairIndex.put( pair.controlNode, i );
+            pairIndex.put( pair.testNode, i );
+            if( pair.changed ) {
+                hiddenChildren.add( pair.controlNode );
+                hiddenChildren.add( pair.testNode );
+            }
+        }
+        final Iterable<Difference> topLevel = diffBuilder.diffBuilder( control, test, hiddenChildren ).build().getDifferences();
+
+        return new Diff( control, test, merge( topLevel, pairs, tasks, pairIndex, roots.getKey(), roots.getValue() ) );
+    }
+
+    private Map.Entry<Node, Node> matchedDocumentElements( final Node controlDoc, final Node testDoc ) {
+        for( final Map.Entry<Node, Node> pair : nodeMatcher.match( children( controlDoc ), children( testDoc ) ) ) {
+            if( pair.getKey().getNodeType() == Node.ELEMENT_NODE && pair.getValue().getNodeType() == Node.ELEMENT_NODE ) {
+                return pair;
+            }
+        }
+        return null;
+    }
+
+    /** pair children of document elements the same way xmlunit would, and find out the xpaths xmlunit would give them */
+    private List<ComponentPair> pairComponents( final Node controlDoc, final Node controlRoot, final Node testDoc, final Node testRoot, final Set<Node> identicalSubtrees ) {
+        final XPathContext controlContext = componentsContext( controlDoc, controlRoot );
+        final XPathContext testContext = componentsContext( testDoc, testRoot );
+        final Map<Node, Integer> controlPositions = positions( controlRoot );
+        final Map<Node, Integer> testPositions = positions( testRoot );
+
+        final List<ComponentPair> pairs = new ArrayList<>();
+        for( final Map.Entry<Node, Node> match : nodeMatcher.match( children( controlRoot ), children( testRoot ) ) ) {
+            final Node controlNode = match.getKey();
+            final Node testNode = match.getValue();
+            final ComponentPair pair = new ComponentPair( controlNode, testNode );
+            pair.changed = controlNode.getNodeType() == Node.ELEMENT_NODE && testNode.getNodeType() == Node.ELEMENT_NODE
+                    && ! identicalSubtrees.contains( controlNode );
+            if( pair.changed ) {
+                controlContext.navigateToChild( controlPositions.get( controlNode ) );
+                pair.controlXPath = controlContext.getXPath();
+                pair.controlParentXPath = controlContext.getParentXPath();
+                controlContext.navigateToParent();
+
+                testContext.navigateToChild( testPositions.get( testNode ) );
+                pair.testXPath = testContext.getXPath();
+                pair.testParentXPath = testContext.getParentXPath();
+                testContext.navigateToParent();
+
+                // copy up front, while nothing else reads the documents
+                pair.controlCopy = new SubtreeCopy( controlNode, identicalSubtrees );
+                pair.testCopy = new SubtreeCopy( testNode, identicalSubtrees );
+            }
+            pairs.add( pair );
+        }
+        return pairs;
+    }
+
+    /** xpath context positioned at the document element, knowing its children: as DOMDifferenceEngine would build it */
+    private XPathContext componentsContext( final Node doc, final Node root ) {
+        final XPathContext context = new XPathContext( prefix2uri, doc );
+        final List<Node> docChildren = allChildren( doc );
+        context.setChildren( Linqy.map( docChildren, XPathContext.DOMNodeInfo::new ) );
+        context.navigateToChild( docChildren.indexOf( root ) );
+        context.setChildren( Linqy.map( allChildren( root ), XPathContext.DOMNodeInfo::new ) );
+        return context;
+    }
+
+    /**
+     * Merge top-level differences with the component differences. Single-threaded walk would produce: document and document element
+     * differences, then for each matched child pair in turn its own differences (node order, then whole subtree), and finally the unmatched children.
+     */
+    private static List<Difference> merge( final Iterable<Difference> topLevel, final List<ComponentPair> pairs, final List<ForkJoinTask<List<Difference>>> tasks,
+            final Map<Node, Integer> pairIndex, final Node controlRoot, final Node testRoot ) {
+
+        final List<Difference> merged = new ArrayList<>();
+        int nextPair = 0;
+        for( final Difference diff : topLevel ) {
+            final Comparison comparison = diff.getComparison();
+            final int index = componentOf( comparison, pairIndex, controlRoot, testRoot );
+            if( index >= 0 ) {
+                nextPair = addComponents( merged, tasks, nextPair, index );
+                if( pairs.get( index ).changed && comparison.getType() != ComparisonType.CHILD_NODELIST_SEQUENCE ) {
+                    continue; // component task compared the component element itself as well
+                }
+            }
+            else if( comparison.getType() == ComparisonType.CHILD_LOOKUP ) {
+                nextPair = addComponents( merged, tasks, nextPair, pairs.size() ); // unmatched children come after all the pairs
+            }
+            merged.add( diff );
+        }
+        addComponents( merged, tasks, nextPair, pairs.size() );
+        return merged;
+    }
+
+    /** add differences of components from first up to (not including) last */
+    private static int addComponents( final List<Difference> merged, final List<ForkJoinTask<List<Difference>>> tasks, final int first, final int last ) {
+        for( int i = first; i < last; i++ ) {
+            if( tasks.get( i ) != null ) {
+                merged.addAll( tasks.get( i ).join() );
+            }
+        }
+        return Math.max( first, last );
+    }
+
+    /** @return index of component pair that comparison belongs to, or -1 if it is about document or document element */
+    private static int componentOf( final Comparison comparison, final Map<Node, Integer> pairIndex, final Node controlRoot, final Node testRoot ) {
+        final Node controlTarget = comparison.getControlDetails().getTarget();
+        final Node component = controlTarget != null
+                ? componentAncestor( controlTarget, controlRoot )
+                : componentAncestor( comparison.getTestDetails().getTarget(), testRoot );
+        final Integer index = component == null ? null : pairIndex.get( component );
+        return index == null ? -1 : index;
+    }
+
+    /** @return child of the root that node is part of, or null */
+    private static Node componentAncestor( final Node target, final Node root ) {
+        Node node = target instanceof Attr ? ( (Attr) target ).getOwnerElement() : target;
+        while( node != null && node.getParentNode() != root ) {
+            node = node.getParentNode();
+        }
+        return node;
+    }
+
+    /** children as xmlunit sees them: without doctype and ignored nodes */
+    private List<Node> children( final Node parent ) {
+        final List<Node> list = new ArrayList<>();
+        for( Node child = parent.getFirstChild(); child != null; child = child.getNextSibling() ) {
+            if( child.getNodeType() != Node.DOCUMENT_TYPE_NODE && ! diffBuilder.isIgnored( child ) ) {
+                list.add( child );
+            }
+        }
+        return list;
+    }
+
+    /** index of each child among all children */
+    private static Map<Node, Integer> positions( final Node parent ) {
+        final Map<Node, Integer> positions = new IdentityHashMap<>();
+        int index = 0;
+        for( Node child = parent.getFirstChild(); child != null; child = child.getNextSibling() ) {
+            positions.put( child, index++ );
+        }
+        return positions;
+    }
+
+    /** all children are counted for xpath positions */
+    private static List<Node> allChildren( final Node parent ) {
+        final List<Node> list = new ArrayList<>();
+        for( Node child = parent.getFirstChild(); child != null; child = child.getNextSibling() ) {
+            list.add( child );
+        }
+        return list;
+    }
+
+    /** matched children of document elements */
+    private final class ComponentPair {
+        private final Node controlNode;
+        private final Node testNode;
+
+        /** changed element pair, diffed as separate task */
+        private boolean changed;
+
+        private String controlXPath;
+        private String controlParentXPath;
+        private String testXPath;
+        private String testParentXPath;
+        private SubtreeCopy controlCopy;
+        private SubtreeCopy testCopy;
+
+        private ComponentPair( final Node controlNode, final Node testNode ) {
+            this.controlNode = controlNode;
+            this.testNode = testNode;
+        }
+
+        private List<Difference> diff() {
+            final Iterable<Difference> differences = diffBuilder.diffBuilder( new DOMSource( controlCopy.root ), new DOMSource( testCopy.root ), Collections.<Node>emptySet(),
+                    node -> controlCopy.owns( node ) ? controlCopy.original( node ) : testCopy.original( node ) )
+                    .build().getDifferences();
+
+            final String controlRootXPath = new XPathContext( prefix2uri, controlCopy.root ).getXPath();
+            final String testRootXPath = new XPathContext( prefix2uri, testCopy.root ).getXPath();
+
+            final List<Difference> rebased = new ArrayList<>();
+            for( final Difference diff : differences ) {
+                final Comparison.Detail c = diff.getComparison().getControlDetails();
+                final Comparison.Detail t = diff.getComparison().getTestDetails();
+                final Comparison comparison = new Comparison( diff.getComparison().getType(),
+                        controlCopy.original( c.getTarget() ), rebase( c.getXPath(), controlRootXPath, controlXPath, controlParentXPath ), c.getValue(),
+                        rebase( c.getParentXPath(), controlRootXPath, controlXPath, controlParentXPath ),
+                        testCopy.original( t.getTarget() ), rebase( t.getXPath(), testRootXPath, testXPath, testParentXPath ), t.getValue(),
+                        rebase( t.getParentXPath(), testRootXPath, testXPath, testParentXPath ) );
+                rebased.add( new Difference( comparison, diff.getResult() ) );
+            }
+            return rebased;
+        }
+    }
+
+    /** "/xs:complexType[1]/xs:sequence[1]" of the copy becomes "/xs:schema[1]/xs:complexType[7]/xs:sequence[1]" */
+    private static String rebase( final String xpath, final String copyRootXPath, final String baseXPath, final String baseParentXPath ) {
+        if( xpath == null ) {
+            return null;
+        }
+        if( xpath.startsWith( copyRootXPath ) ) {
+            return baseXPath + xpath.substring( copyRootXPath.length() );
+        }
+        return baseParentXPath; // parent of copy root is its document
+    }
+
+    /** component subtree imported into its own document, remembering which original node each copied node came from */
+    private static final class SubtreeCopy {
+        private final Map<Node, Node> originals = new IdentityHashMap<>();
+        private final Node root;
+
+        private SubtreeCopy( final Node original, final Set<Node> identicalSubtrees ) {
+            final Document doc = newDocument();
+            root = copy( doc, original, identicalSubtrees );
+            doc.appendChild( root );
+            declareNamespacesInScope( (Element) root, original.getParentNode() );
+        }
+
+        private Node copy( final Document doc, final Node original, final Set<Node> identicalSubtrees ) {
+            final Node copy = doc.importNode( original, false );
+            originals.put( copy, original );
+
+            final NamedNodeMap attributes = copy.getAttributes();
+            if( attributes != null ) {
+                final NamedNodeMap originalAttributes = original.getAttributes();
+                for( int i = 0; i < attributes.getLength(); i++ ) {
+                    final Node attr = attributes.item( i );
+                    final Node originalAttr = attr.getLocalName() != null
+                            ? originalAttributes.getNamedItemNS( attr.getNamespaceURI(), attr.getLocalName() )
+                            : originalAttributes.getNamedItem( attr.getNodeName() );
+                    originals.put( attr, originalAttr );
+                }
+            }
+
+            if( ! identicalSubtrees.contains( original ) ) { // children of identical subtrees are not compared anyway
+                for( Node child = original.getFirstChild(); child != null; child = child.getNextSibling() ) {
+                    copy.appendChild( copy( doc, child, identicalSubtrees ) );
+                }
+            }
+            return copy;
+        }
+
+        /** copy namespace declarations of ancestors, so that prefixed values (xsi:type) resolve the same */
+        private static void declareNamespacesInScope( final Element root, final Node originalParent ) {
+            for( Node ancestor = originalParent; ancestor != null && ancestor.getNodeType() == Node.ELEMENT_NODE; ancestor = ancestor.getParentNode() ) {
+                final NamedNodeMap attributes = ancestor.getAttributes();
+                for( int i = 0; i < attributes.getLength(); i++ ) {
+                    final Attr attr = (Attr) attributes.item( i );
+                    if( XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals( attr.getNamespaceURI() ) && ! root.hasAttributeNS( XMLConstants.XMLNS_ATTRIBUTE_NS_URI, attr.getLocalName() ) ) {
+                        root.setAttributeNS( XMLConstants.XMLNS_ATTRIBUTE_NS_URI, attr.getName(), attr.getValue() );
+                    }
+                }
+            }
+        }
+
+        private static Document newDocument() {
+            try {
+                return XmlDomUtils.pooledDocumentBuilder().newDocument();
+            }
+            catch( final ParserConfigurationException e ) {
+                throw new RuntimeException( e );
+            }
+        }
+
+        private boolean owns( final Node copy ) {
+            return originals.containsKey( copy );
+        }
+
+        /** @return original node that the copy was made from */
+        private Node original( final Node copy ) {
+            if( copy == null ) {
+                return null;
+            }
+            final Node original = originals.get( copy );
+            return original != null ? original : copy;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package io.github.valters.xsdiff.report;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import com.google.common.base.Strings;
+
+/**
+ * Resolves the restricted xpath grammar that xmlunit produces ({@code /xs:schema[1]/xs:element[2]/@name}, {@code /text()[1]})
+ * by walking the DOM directly, without going through JAXP XPath engine.
+ * Anything outside of that grammar is rejected by {@link #compile(String)}, so caller can fall back to full XPath.
+ */
+public final class PositionalXPath {
+
+    /** what kind of node the step selects */
+    private static final byte ELEMENT = 0;
+    private static final byte ATTRIBUTE = 1;
+    private static final byte TEXT = 2;
+    private static final byte COMMENT = 3;
+
+    private static final String TEXT_TEST = "text()";
+    private static final String COMMENT_TEST = "comment()";
+
+    private static final NamespaceContext NAMESPACES = new StaticNamespaceContext();
+
+    private final byte[] kinds;
+    private final String[] namespaces;
+    private final String[] localNames;
+    private final int[] positions;
+
+    private PositionalXPath( final int steps ) {
+        kinds = new byte[steps];
+        namespaces = new String[steps];
+        localNames = new String[steps];
+        positions = new int[steps];
+    }
+
+    /** @return null if path is not made of simple positional steps: caller should use real XPath engine */
+    public static PositionalXPath compile( final String xpathExpr ) {
+        if( Strings.isNullOrEmpty( xpathExpr ) || xpathExpr.charAt( 0 ) != '/' ) {
+            return null;
+        }
+        if( xpathExpr.length() == 1 ) {
+            return new PositionalXPath( 0 ); // document itself
+        }
+
+        final String[] steps = xpathExpr.substring( 1 ).split( "/", -1 );
+        final PositionalXPath path = new PositionalXPath( steps.length );
+        for( int i = 0; i < steps.length; i++ ) {
+            if( ! path.parseStep( i, steps[i] ) ) {
+                return null;
+            }
+            if( path.kinds[i] == ATTRIBUTE && i != steps.length - 1 ) {
+                return null; // attribute can only be the last step
+            }
+        }
+        return path;
+    }
+
+    private boolean parseStep( final int i, final String step ) {
+        if( step.isEmpty() ) {
+            return false; // "//" is not positional
+        }
+
+        if( step.charAt( 0 ) == '@' ) {
+            kinds[i] = ATTRIBUTE;
+            return parseName( i, step.substring( 1 ) );
+        }
+
+        String test = step;
+        positions[i] = 1; // no predicate: first node in document order
+        final int predicateAt = step.indexOf( '[' );
+        if( predicateAt >= 0 ) {
+            if( step.charAt( step.length() - 1 ) != ']' ) {
+                return false;
+            }
+            positions[i] = parsePosition( step.substring( predicateAt + 1, step.length() - 1 ) );
+            if( positions[i] <= 0 ) {
+                return false;
+            }
+            test = step.substring( 0, predicateAt );
+        }
+
+        if( TEXT_TEST.equals( test ) ) {
+            kinds[i] = TEXT;
+            return true;
+        }
+        if( COMMENT_TEST.equals( test ) ) {
+            kinds[i] = COMMENT;
+            return true;
+        }
+        kinds[i] = ELEMENT;
+        return parseName( i, test );
+    }
+
+    /** @return -1 if not a plain number */
+    private static int parsePosition( final String predicate ) {
+        if( predicate.isEmpty() || predicate.length() > 9 ) {
+            return -1;
+        }
+        int value = 0;
+        for( int i = 0; i < predicate.length(); i++ ) {
+            final char c = predicate.charAt( i );
+            if( c < '0' || c > '9' ) {
+                return -1;
+            }
+            value = value * 10 + ( c - '0' );
+        }
+        return value;
+    }
+
+    private boolean parseName( final int i, final String qname ) {
+        if( qname.isEmpty() || qname.indexOf( '(' ) >= 0 || qname.indexOf( '*' ) >= 0 || qname.indexOf( '[' ) >= 0 ) {
+            return false;
+        }
+
+        final int colonAt = qname.indexOf( ':' );
+        if( colonAt < 0 ) {
+            namespaces[i] = XMLConstants.NULL_NS_URI;
+            localNames[i] = qname;
+            return true;
+        }
+
+        final String namespace = NAMESPACES.getNamespaceURI( qname.substring( 0, colonAt ) );
+        if( namespace == null ) {
+            return false; // unknown prefix, let XPath engine report the error
+        }
+        namespaces[i] = namespace;
+        localNames[i] = qname.substring( colonAt + 1 );
+        return ! localNames[i].isEmpty() && localNames[i].indexOf( ':' ) < 0;
+    }
+
+    /** @return matching node, or null if there is no such node */
+    public Node evaluate( final Document doc ) {
+        Node current = doc;
+        for( int i = 0; i < kinds.length && current != null; i++ ) {
+            if( kinds[i] == ATTRIBUTE ) {
+                current = attribute( current, i );
+            }
+            else {
+                current = child( current, i );
+            }
+        }
+        return current;
+    }
+
+    /** resolve through document index: one hash probe per step */
+    public Node evaluate( final XPathNodeIndex index ) {
+        int current = index.root();
+        for( int i = 0; i < kinds.length; i++ ) {
+            if( kinds[i] == ATTRIBUTE ) {
+                return attribute( index.node( current ), i );
+            }
+
+            final int step = indexStep( index, i );
+            if( step < 0 ) {
+                return null;
+            }
+            current = index.child( current, step, positions[i] );
+            if( current < 0 ) {
+                return null;
+            }
+        }
+        return index.node( current );
+    }
+
+    private int indexStep( final XPathNodeIndex index, final int i ) {
+        switch( kinds[i] ) {
+        case TEXT:
+            return XPathNodeIndex.TEXT_STEP;
+        case COMMENT:
+            return XPathNodeIndex.COMMENT_STEP;
+        default:
+            return index.elementStep( namespaces[i], localNames[i] );
+        }
+    }
+
+    private Attr attribute( final Node node, final int i ) {
+        if( node.getNodeType() != Node.ELEMENT_NODE ) {
+            return null;
+        }
+        final String namespace = namespaces[i].isEmpty() ? null : namespaces[i];
+        return ( (Element) node ).getAttributeNodeNS( namespace, localNames[i] );
+    }
+
+    private Node child( final Node parent, final int i ) {
+        int position = 0;
+        for( Node child = parent.getFirstChild(); child != null; child = child.getNextSibling() ) {
+            if( matches( child, i ) ) {
+                position++;
+                if( position == positions[i] ) {
+                    return child;
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean matches( final Node node, final int i ) {
+        switch( kinds[i] ) {
+        case ELEMENT:
+            return node.getNodeType() == Node.ELEMENT_NODE && sameName( node, i );
+        case TEXT:
+            // XPath sees adjacent text and CDATA nodes as a single text node
+            return isText( node ) && ! isText( node.getPreviousSibling() );
+        case COMMENT:
+            return node.getNodeType() == Node.COMMENT_NODE;
+        default:
+            return false;
+        }
+    }
+
+    private boolean sameName( final Node node, final int i ) {
+        final String localName = node.getLocalName();
+        if( localName == null ) {
+            // built without namespace awareness
+            return namespaces[i].isEmpty() && localNames[i].equals( node.getNodeName() );
+        }
+        return localNames[i].equals( localName ) && namespaces[i].equals( Strings.nullToEmpty( node.getNamespaceURI() ) );
+    }
+
+    private static boolean isText( final Node node ) {
+        return node != null && ( node.getNodeType() == Node.TEXT_NODE || node.getNodeType() == Node.CDATA_SECTION_NODE );
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package io.github.valters.xsdiff.report;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xmlunit.diff.NodeMatcher;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Pairs control and test children the way XML Schema components are identified. Children are paired when their keys are equal:
+ * namespace + local name, followed by "name" (else "ref") for element, attribute, group, attributeGroup, simpleType and
+ * complexType, or by "value" for enumeration. Other elements are keyed by namespace + local name alone.
+ * <p>
+ * Test children are bucketed by key in a hash map, and each control child takes the first still unmatched test child
+ * from its bucket, in linear time: large schemas have thousands of top-level siblings.
+ */
+public class SchemaNodeMatcher implements NodeMatcher {
+
+    /** components that are identified by name, or by reference */
+    private static final ImmutableSet<String> NAMED_COMPONENTS = ImmutableSet.of( "element", "attribute", "group", "attributeGroup", "simpleType", "complexType" );
+
+    private static final String ENUMERATION = "enumeration";
+
+    private static final String ATTR_NAME = "name";
+    private static final String ATTR_REF = "ref";
+    private static final String ATTR_VALUE = "value";
+
+    @Override
+    public Iterable<Map.Entry<Node, Node>> match( final Iterable<Node> controlNodes, final Iterable<Node> testNodes ) {
+        final Map<String, ArrayDeque<Node>> buckets = new HashMap<>();
+        for( final Node test : testNodes ) {
+            buckets.computeIfAbsent( matchKey( test ), key -> new ArrayDeque<>() ).add( test );
+        }
+
+        final List<Map.Entry<Node, Node>> matches = new ArrayList<>();
+        for( final Node control : controlNodes ) {
+            final ArrayDeque<Node> candidates = buckets.get( matchKey( control ) );
+            if( candidates != null && ! candidates.isEmpty() ) {
+                matches.add( new AbstractMap.SimpleImmutableEntry<>( control, candidates.poll() ) );
+            }
+        }
+        return matches;
+    }
+
+    /** nodes with equal keys can be compared */
+    private static String matchKey( final Node node ) {
+        if( node.getNodeType() != Node.ELEMENT_NODE ) {
+            // text and CDATA can be compared to each other, as with xmlunit DefaultNodeTypeMatcher
+            return node.getNodeType() == Node.CDATA_SECTION_NODE ? String.valueOf( Node.TEXT_NODE ) : String.valueOf( node.getNodeType() );
+        }
+
+        final String localName = localName( node );
+        final StringBuilder key = new StringBuilder( 64 )
+                .append( Strings.nullToEmpty( node.getNamespaceURI() ) ).append( '}' ).append( localName );
+        final String componentKey = componentKey( (Element) node );
+        if( componentKey != null ) {
+            key.append( '@' ).append( componentKey );
+        }
+        return key.toString();
+    }
+
+    /**
+     * Identity of schema component within its parent, e.g. "name=Complex_Type1", "ref=xs:lang", "value=A".
+     * @return null if element is not identified by attribute (or does not have the identifying attribute)
+     */
+    public static String componentKey( final Element element ) {
+        final String localName = localName( element );
+        if( NAMED_COMPONENTS.contains( localName ) ) {
+            final String name = attribute( element, ATTR_NAME );
+            if( name != null ) {
+                return ATTR_NAME + "=" + name;
+            }
+            final String ref = attribute( element, ATTR_REF );
+            if( ref != null ) {
+                return ATTR_REF + "=" + ref;
+            }
+            return null;
+        }
+        if( ENUMERATION.equals( localName ) ) {
+            final String value = attribute( element, ATTR_VALUE );
+            return value == null ? null : ATTR_VALUE + "=" + value;
+        }
+        return null;
+    }
+
+    private static String localName( final Node node ) {
+        final String localName = node.getLocalName();
+        return localName != null ? localName : node.getNodeName();
+    }
+
+    /** @return unqualified attribute value, or null if attribute is not present */
+    private static String attribute( final Element element, final String name ) {
+        final Attr attr = element.getAttributeNodeNS( null, name );
+        return attr == null ? null : attr.getValue();
+    }
+}
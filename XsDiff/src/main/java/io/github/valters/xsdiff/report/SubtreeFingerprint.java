@@ -0,0 +1,173 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package io.github.valters.xsdiff.report;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xmlunit.diff.NodeMatcher;
+
+import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Merkle style hash of every node subtree: node hash covers everything xmlunit would compare about the node
+ * (type, names, prefix, value, attributes) plus the hashes of its children, in order.
+ * Two subtrees with equal fingerprints would not produce any difference, so their comparison can be skipped.
+ * <p>
+ * Fingerprints are computed on documents that have whitespace and comments already stripped,
+ * same as what xmlunit gets to see.
+ */
+public final class SubtreeFingerprint {
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private static final String XSI_TYPE = "type";
+
+    private final Map<Node, HashCode> fingerprints = new IdentityHashMap<>();
+
+    private SubtreeFingerprint() {
+    }
+
+    /** compute fingerprints of all nodes under (and including) root */
+    public static SubtreeFingerprint of( final Node root ) {
+        final SubtreeFingerprint fingerprint = new SubtreeFingerprint();
+        fingerprint.hash( root );
+        return fingerprint;
+    }
+
+    /** @return fingerprint of the node subtree, or null if node was not under the root */
+    public HashCode get( final Node node ) {
+        return fingerprints.get( node );
+    }
+
+    /**
+     * Walk both trees top-down, pairing children with the same matcher xmlunit will use.
+     * @return elements (from both sides) whose subtree is identical to the subtree of their counterpart; children of these need not be compared
+     */
+    public static Set<Node> identicalSubtrees( final Node control, final Node test, final NodeMatcher matcher ) {
+        final SubtreeFingerprint controlPrints = of( control );
+        final SubtreeFingerprint testPrints = of( test );
+        final Set<Node> identical = Sets.newIdentityHashSet();
+        collectIdentical( control, controlPrints, test, testPrints, matcher, identical );
+        return identical;
+    }
+
+    private static void collectIdentical( final Node control, final SubtreeFingerprint controlPrints,
+            final Node test, final SubtreeFingerprint testPrints, final NodeMatcher matcher, final Set<Node> identical ) {
+
+        for( final Map.Entry<Node, Node> pair : matcher.match( children( control ), children( test ) ) ) {
+            final Node controlChild = pair.getKey();
+            final Node testChild = pair.getValue();
+            if( controlChild.getNodeType() != Node.ELEMENT_NODE || testChild.getNodeType() != Node.ELEMENT_NODE ) {
+                continue;
+            }
+
+            if( controlPrints.get( controlChild ).equals( testPrints.get( testChild ) ) ) {
+                identical.add( controlChild );
+                identical.add( testChild );
+            }
+            else {
+                collectIdentical( controlChild, controlPrints, testChild, testPrints, matcher, identical );
+            }
+        }
+    }
+
+    /** children as xmlunit sees them by default: without doctype */
+    private static List<Node> children( final Node parent ) {
+        final List<Node> list = new ArrayList<>();
+        for( Node child = parent.getFirstChild(); child != null; child = child.getNextSibling() ) {
+            if( child.getNodeType() != Node.DOCUMENT_TYPE_NODE ) {
+                list.add( child );
+            }
+        }
+        return list;
+    }
+
+    private HashCode hash( final Node node ) {
+        final Hasher hasher = HASH.newHasher();
+        hasher.putShort( node.getNodeType() );
+        putString( hasher, node.getNamespaceURI() );
+        putString( hasher, node.getNodeName() );
+        putString( hasher, node.getLocalName() );
+        putString( hasher, node.getNodeValue() );
+
+        final NamedNodeMap attributes = node.getAttributes();
+        if( attributes != null ) {
+            final List<HashCode> attributeHashes = new ArrayList<>( attributes.getLength() );
+            for( int i = 0; i < attributes.getLength(); i++ ) {
+                final Attr attr = (Attr) attributes.item( i );
+                if( ! XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals( attr.getNamespaceURI() ) ) {
+                    attributeHashes.add( hashAttribute( attr ) );
+                }
+            }
+            hasher.putInt( attributeHashes.size() );
+            if( ! attributeHashes.isEmpty() ) {
+                hasher.putBytes( Hashing.combineUnordered( attributeHashes ).asBytes() ); // attribute order does not matter
+            }
+        }
+
+        int childCount = 0;
+        for( Node child = node.getFirstChild(); child != null; child = child.getNextSibling() ) {
+            if( child.getNodeType() != Node.DOCUMENT_TYPE_NODE ) {
+                hasher.putBytes( hash( child ).asBytes() );
+                childCount++;
+            }
+        }
+        hasher.putInt( childCount );
+
+        final HashCode fingerprint = hasher.hash();
+        fingerprints.put( node, fingerprint );
+        return fingerprint;
+    }
+
+    private static HashCode hashAttribute( final Attr attr ) {
+        final Hasher hasher = HASH.newHasher();
+        putString( hasher, attr.getNamespaceURI() );
+        putString( hasher, attr.getNodeName() );
+        putString( hasher, attr.getLocalName() );
+        putString( hasher, attr.getValue() );
+        hasher.putBoolean( attr.getSpecified() );
+        if( XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI.equals( attr.getNamespaceURI() ) && XSI_TYPE.equals( attr.getLocalName() ) ) {
+            // xsi:type is compared as QName: same text may mean different type when prefix is bound differently
+            final String value = attr.getValue();
+            final int colonAt = value.indexOf( ':' );
+            putString( hasher, attr.getOwnerElement().lookupNamespaceURI( colonAt < 0 ? null : value.substring( 0, colonAt ) ) );
+        }
+        return hasher.hash();
+    }
+
+    /** length prefixed, so that adjacent strings can't be confused */
+    private static void putString( final Hasher hasher, final String str ) {
+        if( str == null ) {
+            hasher.putInt( -1 );
+            return;
+        }
+        hasher.putInt( str.length() );
+        hasher.putUnencodedChars( str );
+    }
+
+}
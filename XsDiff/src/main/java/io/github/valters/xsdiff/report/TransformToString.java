@@ -19,7 +19,6 @@ import java.io.StringWriter;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.TransformerFactoryConfigurationError;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
@@ -33,8 +32,7 @@ public class TransformToString {
 
     public String nodeToString( final Node node ) {
         try {
-            final TransformerFactory tf = XmlDomUtils.transformerFactory();
-            final Transformer transformer = XmlDomUtils.newFragmentTransformer( tf );
+            final Transformer transformer = XmlDomUtils.pooledFragmentTransformer();
 
             final StringWriter stw = new StringWriter();
             transformer.transform( new DOMSource( node ), new StreamResult( stw ) );
@@ -53,8 +51,7 @@ public class TransformToString {
         }
 
         try {
-            final TransformerFactory tf = XmlDomUtils.transformerFactory();
-            final Transformer transformer = XmlDomUtils.newFragmentTransformer( tf );
+            final Transformer transformer = XmlDomUtils.pooledFragmentTransformer();
 
             final StringWriter stw = new StringWriter();
             transformer.transform( new DOMSource( importNodeWithoutNamespaces( node ) ), new StreamResult( stw ) );
@@ -69,7 +66,7 @@ public class TransformToString {
 
     /** tricky stuff that removes namespaces */
     public Document importWithoutNamespaces( final Node node ) throws ParserConfigurationException {
-        final Document doc = XmlDomUtils.documentBuilder().newDocument();
+        final Document doc = XmlDomUtils.pooledDocumentBuilder().newDocument();
 //        doc.setStrictErrorChecking( false ); // doc will throw error if elements have prefixes (xs:complexType), but not sure how to get rid of those
         final Node newNode = doc.importNode( node, true );
         final Node cleanNode = XmlDomUtils.removeNamespaceRecursive( newNode, doc );
@@ -0,0 +1,219 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+
+package io.github.valters.xsdiff.report;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import com.google.common.base.Strings;
+
+/**
+ * Positional xpath index of a Document, built in a single traversal: every element, text and comment node is given an ordinal,
+ * and (parent ordinal, step name, position) is hashed into an open addressing table of ordinals.
+ * Resolving xmlunit xpath then costs one table probe per step, instead of scanning sibling lists.
+ * <p>
+ * Index is attached to the Document as user data, and is only valid while the Document is not modified.
+ */
+public final class XPathNodeIndex {
+
+    private static final String USER_DATA_KEY = XPathNodeIndex.class.getName();
+
+    /** step ids of non-element node kinds */
+    static final int TEXT_STEP = 0;
+    static final int COMMENT_STEP = 1;
+    private static final int FIRST_ELEMENT_STEP = 2;
+
+    /** element step ids: namespace -> local name -> id */
+    private final Map<String, Map<String, Integer>> elementSteps = new HashMap<>();
+    private int nextStep = FIRST_ELEMENT_STEP;
+
+    private Node[] nodes;
+    private int[] parents;
+    private int[] steps;
+    private int[] positions;
+    private int size;
+
+    /** open addressing hash table: holds ordinal+1, 0 means empty slot */
+    private int[] table;
+    private int mask;
+
+    private XPathNodeIndex( final int capacity ) {
+        nodes = new Node[capacity];
+        parents = new int[capacity];
+        steps = new int[capacity];
+        positions = new int[capacity];
+    }
+
+    /** build index and attach it to document, so that {@link XmlDomUtils#findNode(Document, String)} uses it */
+    public static XPathNodeIndex attach( final Document doc ) {
+        final XPathNodeIndex index = build( doc );
+        doc.setUserData( USER_DATA_KEY, index, null );
+        return index;
+    }
+
+    /** drop the index, releasing memory */
+    public static void detach( final Document doc ) {
+        doc.setUserData( USER_DATA_KEY, null, null );
+    }
+
+    /** @return index that was attached to document, or null */
+    public static XPathNodeIndex of( final Document doc ) {
+        return (XPathNodeIndex) doc.getUserData( USER_DATA_KEY );
+    }
+
+    public static XPathNodeIndex build( final Document doc ) {
+        final XPathNodeIndex index = new XPathNodeIndex( 1024 );
+        index.add( doc, -1, -1, 0 );
+        index.walk( doc, 0 );
+        index.buildTable();
+        return index;
+    }
+
+    /** depth-first walk, numbering children of each parent the same way xmlunit does */
+    private void walk( final Node parent, final int parentOrdinal ) {
+        // positions are counted per step; most parents only have few distinct child names
+        int[] counters = new int[8];
+        int[] counterSteps = new int[8];
+        int distinct = 0;
+
+        for( Node child = parent.getFirstChild(); child != null; child = child.getNextSibling() ) {
+            final int step = stepOf( child );
+            if( step < 0 ) {
+                continue;
+            }
+
+            int slot = 0;
+            while( slot < distinct && counterSteps[slot] != step ) {
+                slot++;
+            }
+            if( slot == distinct ) {
+                if( distinct == counters.length ) {
+                    counters = Arrays.copyOf( counters, distinct * 2 );
+                    counterSteps = Arrays.copyOf( counterSteps, distinct * 2 );
+                }
+                counterSteps[slot] = step;
+                counters[slot] = 0;
+                distinct++;
+            }
+
+            final int ordinal = add( child, parentOrdinal, step, ++counters[slot] );
+            if( child.getNodeType() == Node.ELEMENT_NODE ) {
+                walk( child, ordinal );
+            }
+        }
+    }
+
+    /** @return -1 if node is not addressable by xmlunit paths */
+    private int stepOf( final Node node ) {
+        switch( node.getNodeType() ) {
+        case Node.ELEMENT_NODE:
+            return elementStep( node );
+        case Node.TEXT_NODE:
+        case Node.CDATA_SECTION_NODE:
+            // XPath sees adjacent text and CDATA nodes as a single text node
+            return isText( node.getPreviousSibling() ) ? -1 : TEXT_STEP;
+        case Node.COMMENT_NODE:
+            return COMMENT_STEP;
+        default:
+            return -1;
+        }
+    }
+
+    private int elementStep( final Node node ) {
+        final String localName = node.getLocalName();
+        final String namespace = localName == null ? "" : Strings.nullToEmpty( node.getNamespaceURI() );
+        final Map<String, Integer> names = elementSteps.computeIfAbsent( namespace, ns -> new HashMap<>() );
+        return names.computeIfAbsent( localName == null ? node.getNodeName() : localName, name -> nextStep++ );
+    }
+
+    /** @return step id, or -1 if no node with such name exists in document */
+    int elementStep( final String namespace, final String localName ) {
+        final Map<String, Integer> names = elementSteps.get( namespace );
+        if( names == null ) {
+            return -1;
+        }
+        final Integer step = names.get( localName );
+        return step == null ? -1 : step;
+    }
+
+    private static boolean isText( final Node node ) {
+        return node != null && ( node.getNodeType() == Node.TEXT_NODE || node.getNodeType() == Node.CDATA_SECTION_NODE );
+    }
+
+    private int add( final Node node, final int parent, final int step, final int position ) {
+        if( size == nodes.length ) {
+            final int capacity = size * 2;
+            nodes = Arrays.copyOf( nodes, capacity );
+            parents = Arrays.copyOf( parents, capacity );
+            steps = Arrays.copyOf( steps, capacity );
+            positions = Arrays.copyOf( positions, capacity );
+        }
+        nodes[size] = node;
+        parents[size] = parent;
+        steps[size] = step;
+        positions[size] = position;
+        return size++;
+    }
+
+    private void buildTable() {
+        table = new int[ Math.max( 16, Integer.highestOneBit( size * 2 - 1 ) << 1 ) ];
+        mask = table.length - 1;
+        for( int ordinal = 1; ordinal < size; ordinal++ ) { // document itself has no parent
+            int slot = hash( parents[ordinal], steps[ordinal], positions[ordinal] ) & mask;
+            while( table[slot] != 0 ) {
+                slot = ( slot + 1 ) & mask;
+            }
+            table[slot] = ordinal + 1;
+        }
+    }
+
+    private static int hash( final int parent, final int step, final int position ) {
+        int h = parent * 0x9E3779B1;
+        h = ( h ^ step ) * 0x85EBCA6B;
+        h = ( h ^ position ) * 0xC2B2AE35;
+        return h ^ ( h >>> 16 );
+    }
+
+    /** ordinal of the document node */
+    int root() {
+        return 0;
+    }
+
+    /** @return ordinal of the child, or -1 if there is no such child */
+    int child( final int parent, final int step, final int position ) {
+        int slot = hash( parent, step, position ) & mask;
+        for( int entry = table[slot]; entry != 0; entry = table[slot] ) {
+            final int ordinal = entry - 1;
+            if( parents[ordinal] == parent && steps[ordinal] == step && positions[ordinal] == position ) {
+                return ordinal;
+            }
+            slot = ( slot + 1 ) & mask;
+        }
+        return -1;
+    }
+
+    Node node( final int ordinal ) {
+        return nodes[ordinal];
+    }
+
+    /** how many nodes were indexed (including document node) */
+    public int size() {
+        return size;
+    }
+}
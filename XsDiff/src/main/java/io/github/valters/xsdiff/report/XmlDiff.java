@@ -14,6 +14,10 @@
 
 package io.github.valters.xsdiff.report;
 
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
 import javax.xml.namespace.QName;
 
 import org.w3c.dom.Attr;
@@ -22,6 +26,9 @@ import org.w3c.dom.Node;
 import org.xmlunit.diff.Comparison;
 import org.xmlunit.diff.Comparison.Detail;
 
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+
 import io.github.valters.xsdiff.format.NodeChangesHolder;
 import io.github.valters.xsdiff.format.SemanticDiffFormatter;
 
@@ -33,25 +40,57 @@ import org.xmlunit.diff.Difference;
 public class XmlDiff {
 
     private final XmlDomUtils xmlDomUtils = new XmlDomUtils();
-    private final NodeToString printNode = new NodeToString();
+    private final NodeToString printNode;
 
     private final Document controlDoc;
     private final Document testDoc;
-    private final Diff diffs;
+    private final XmlSchemaDiffBuilder diffBuilder;
     private HtmlContentOutput output;
     private SemanticDiffFormatter semanticDiff;
 
+    /** should documents be indexed before looking up nodes */
+    private boolean indexNodes;
+
+    /** should differences be printed as they are found, instead of collecting them first */
+    private boolean streaming;
+
+    /** differences after this many are only counted; 0 for no limit */
+    private int maxDifferences;
+
+    /** differences found by the engine so far, counted by the controller (in non-streaming mode they are printed only after comparison) */
+    private int foundDifferences;
+
+    /** comparison was stopped soon after the limit: there may be more differences than counted */
+    private boolean stopped;
+
+    /** differences over the limit, by type */
+    private final Map<ComparisonType, Integer> skippedDifferences = new EnumMap<>( ComparisonType.class );
+
+    /** how many differences were processed by {@link #run(HtmlContentOutput, SemanticDiffFormatter)} */
+    private int differenceCount;
+
+    /** results can only be read once {@link #run(HtmlContentOutput, SemanticDiffFormatter)} was called */
+    private boolean ran;
+
+    /** documents are compared by {@link #run(HtmlContentOutput, SemanticDiffFormatter)}, not when constructed */
     public XmlDiff( final Document controlDoc, final Document testDoc, final XmlSchemaDiffBuilder diffBuilder ) {
+        this( controlDoc, testDoc, diffBuilder, new NodeToString() );
+    }
+
+    /** @param printNode serializer to share with {@link SemanticDiffFormatter}, so that both use the same memoized node texts */
+    public XmlDiff( final Document controlDoc, final Document testDoc, final XmlSchemaDiffBuilder diffBuilder, final NodeToString printNode ) {
+        this.printNode = printNode;
         this.controlDoc = controlDoc;
         this.testDoc = testDoc;
-        this.diffs = diffBuilder.compare( controlDoc, testDoc );
+        this.diffBuilder = diffBuilder;
     }
 
     private void printAddedNode( final Comparison comparison ) {
         final Comparison.Detail details = comparison.getTestDetails();
         final Node parentNode = xmlDomUtils.findNode( testDoc, details.getParentXPath() );
 
-        final String nodeText = printNode.nodeToString( xmlDomUtils.findNode( testDoc, details.getXPath() ) );
+        final Node node = xmlDomUtils.findNode( testDoc, details.getXPath() );
+        final String nodeText = printNode.nodeToString( node );
         output.startSpan(  "ADDED <!-- xpath: " + details.getXPath() + " (parent node: "+printNode.printNodeSignature( parentNode )+" - "+details.getParentXPath()+" ) -->");
         output.writeRaw( "+ " );
         output.endSpan();
@@ -59,8 +98,8 @@ public class XmlDiff {
 //~        output.addedPart( nodeText );
 //~        output.newline();
 
-        if( ! semanticDiff.markNodeAdded( XmlDomUtils.wideContext( details.getParentXPath() ), nodeText, testDoc ) ) {
-            semanticDiff.markNodeAdded( details.getXPath(), nodeText, testDoc ); // make sure change is not lost
+        if( ! semanticDiff.markNodeAdded( XmlDomUtils.wideContext( details.getParentXPath() ), node, nodeText, testDoc ) ) {
+            semanticDiff.markNodeAdded( details.getXPath(), node, nodeText, testDoc ); // make sure change is not lost
         }
     }
 
@@ -71,34 +110,126 @@ public class XmlDiff {
         output.writeRaw( "- " );
         output.endSpan();
 
-        final String nodeText = printNode.nodeToString( xmlDomUtils.findNode( controlDoc, details.getXPath() ) );
+        final Node node = xmlDomUtils.findNode( controlDoc, details.getXPath() );
+        final String nodeText = printNode.nodeToString( node );
 // don't need to output anything
 //~        output.removedPart( nodeText );
 //~        output.newline();
 
-        if( ! semanticDiff.markNodeRemoved( XmlDomUtils.wideContext( details.getParentXPath() ), nodeText, controlDoc ) ) {
-            semanticDiff.markNodeRemoved( details.getXPath(), nodeText, controlDoc ); // make sure change is not lost
+        if( ! semanticDiff.markNodeRemoved( XmlDomUtils.wideContext( details.getParentXPath() ), node, nodeText, controlDoc ) ) {
+            semanticDiff.markNodeRemoved( details.getXPath(), node, nodeText, controlDoc ); // make sure change is not lost
         }
     }
 
+    /** index both documents in one pass before processing differences, so that every xpath lookup is a hash probe instead of a DOM walk */
+    public XmlDiff withNodeIndex() {
+        this.indexNodes = true;
+        return this;
+    }
+
+    /** print each difference as soon as xmlunit finds it: memory use does not grow with the number of differences */
+    public XmlDiff withStreaming() {
+        this.streaming = true;
+        return this;
+    }
+
+    /**
+     * print only first differences, and stop comparing at the next one: keeps report size and run time bounded when most of the schema has changed.
+     * Stopping depends on the order of differences, so the documents are then compared on a single thread.
+     */
+    public XmlDiff withMaxDifferences( final int maxDifferences ) {
+        this.maxDifferences = maxDifferences;
+        return this;
+    }
+
     public void run( final HtmlContentOutput output, final SemanticDiffFormatter semanticDiff ) {
         this.output = output;
         this.semanticDiff = semanticDiff;
+        this.ran = true;
 
-        for( final Difference diff : diffs.getDifferences() ) {
-            final Comparison comparison = diff.getComparison();
-            if( isAdded( comparison ) ) {
-                printAddedNode( comparison );
-            }
-            else if( isDeleted( comparison ) ) {
-                printDeletedNode( comparison );
+        if( indexNodes ) {
+            XPathNodeIndex.attach( controlDoc );
+            XPathNodeIndex.attach( testDoc );
+        }
+        if( maxDifferences > 0 ) {
+            diffBuilder.withParallelism( null ).withComparisonController( this::stopDiffing );
+        }
+        printNode.startMemo();
+        try {
+            if( streaming ) {
+                diffBuilder.compare( controlDoc, testDoc, ( comparison, outcome ) -> printDifference( comparison ) );
             }
             else {
-                printModifiedNode( comparison );
+                final Diff diffs = diffBuilder.compare( controlDoc, testDoc );
+                for( final Difference diff : diffs.getDifferences() ) {
+                    printDifference( diff.getComparison() );
+                }
+            }
+        }
+        finally {
+            printNode.clearMemo();
+            if( indexNodes ) {
+                XPathNodeIndex.detach( controlDoc );
+                XPathNodeIndex.detach( testDoc );
             }
         }
     }
 
+    /** one difference over the limit is enough to know that some are not shown */
+    private boolean stopDiffing( final Difference difference ) {
+        foundDifferences++;
+        stopped = foundDifferences > maxDifferences;
+        return stopped;
+    }
+
+    private void printDifference( final Comparison comparison ) {
+        differenceCount++;
+        if( maxDifferences > 0 && differenceCount > maxDifferences ) {
+            skippedDifferences.merge( comparison.getType(), 1, Integer::sum );
+            return;
+        }
+        if( isAdded( comparison ) ) {
+            printAddedNode( comparison );
+        }
+        else if( isDeleted( comparison ) ) {
+            printDeletedNode( comparison );
+        }
+        else {
+            printModifiedNode( comparison );
+        }
+    }
+
+    /**
+     * @return differences processed; only a lower bound if {@link #isStopped()}
+     * @throws IllegalStateException if diff has not been run yet
+     */
+    public int getDifferenceCount() {
+        checkRan();
+        return differenceCount;
+    }
+
+    /**
+     * @return how many differences over the limit were not printed, by comparison type (those found before comparison was stopped)
+     * @throws IllegalStateException if diff has not been run yet
+     */
+    public Map<ComparisonType, Integer> getSkippedDifferences() {
+        checkRan();
+        return Collections.unmodifiableMap( skippedDifferences );
+    }
+
+    /**
+     * @return true if comparison was stopped after the difference limit was exceeded, so the remaining differences were not counted
+     * @throws IllegalStateException if diff has not been run yet
+     */
+    public boolean isStopped() {
+        checkRan();
+        return stopped;
+    }
+
+    private void checkRan() {
+        Preconditions.checkState( ran, "Documents are compared by run(), results are not available before it" );
+    }
+
     private void printModifiedNode( final Comparison comparison ) {
 
         final Comparison.Detail details = comparison.getControlDetails();
@@ -150,12 +281,22 @@ public class XmlDiff {
     }
 
     /** this one is clever enough to expand node text up to parent node scope, to provide interesting context when changes are printed */
-    private String holderNodeText( final Document doc, final Detail details ) {
+    private NodeText holderNodeText( final Document doc, final Detail details ) {
         final long xpathDepth = XmlDomUtils.xpathDepth( details.getXPath() );
         final boolean shouldTakeParent = xpathDepth > 2;
         final String xpathExpr = shouldTakeParent ? XmlDomUtils.wideContext( details.getParentXPath() ) : details.getXPath();
-        final String nodeText = printNode.nodeToString( xmlDomUtils.findNode( doc, xpathExpr ) );
-        return nodeText;
+        return printNode.nodeToText( xmlDomUtils.findNode( doc, xpathExpr ) );
+    }
+
+    /** @return attribute by name; null if not found */
+    private static Attr attr( final Node node, final QName name ) {
+        if( name == null ) {
+            return null;
+        }
+        if( Strings.isNullOrEmpty( name.getNamespaceURI() ) ) {
+            return (Attr) node.getAttributes().getNamedItem( name.getLocalPart() );
+        }
+        return (Attr) node.getAttributes().getNamedItemNS( name.getNamespaceURI(), name.getLocalPart() );
     }
 
     /** only info about new attr value
@@ -170,7 +311,7 @@ public class XmlDiff {
             output.endSpan();
             final String parentNodeXpath = XmlDomUtils.wideContext( comparison.getTestDetails().getXPath() );
             final NodeChangesHolder changeHolder = semanticDiff.updateHolder( semanticDiff.addChangeHolder( parentNodeXpath ), NodeChangesHolder.OpType.ADDED, holderNodeText( testDoc, comparison.getTestDetails() ) );
-            changeHolder.addedAttribute( nodeText, attributeText );
+            changeHolder.addedAttribute( attr( comparison.getTestDetails().getTarget(), (QName)comparison.getTestDetails().getValue() ), nodeText, attributeText );
             // add the second part of parent text for the conventional diffs
             semanticDiff.updateHolder( changeHolder, NodeChangesHolder.OpType.REMOVED, holderNodeText( controlDoc, comparison.getControlDetails() ) );
             changeHolder.attachAutoDiffs();
@@ -185,7 +326,7 @@ public class XmlDiff {
 
             final String parentNodeXpath = XmlDomUtils.wideContext( comparison.getControlDetails().getXPath() );
             final NodeChangesHolder changeHolder = semanticDiff.updateHolder( semanticDiff.addChangeHolder( parentNodeXpath ), NodeChangesHolder.OpType.REMOVED, holderNodeText( controlDoc, comparison.getControlDetails() ) );
-            changeHolder.removedAttribute( controlNodeText, controlAttributeText );
+            changeHolder.removedAttribute( attr( comparison.getControlDetails().getTarget(), (QName)comparison.getControlDetails().getValue() ), controlNodeText, controlAttributeText );
             // add the second part of parent text for the conventional diffs
             semanticDiff.updateHolder( changeHolder, NodeChangesHolder.OpType.ADDED, holderNodeText( testDoc, comparison.getTestDetails() ) );
         }
@@ -198,11 +339,11 @@ public class XmlDiff {
             output.endSpan();
             final String parentNodeXpath = XmlDomUtils.wideContext( comparison.getTestDetails().getXPath() );
             final NodeChangesHolder changeHolder = semanticDiff.updateHolder( semanticDiff.addChangeHolder( parentNodeXpath ), NodeChangesHolder.OpType.ADDED, holderNodeText( testDoc, comparison.getTestDetails() ) );
-            changeHolder.addedAttribute( nodeText, attributeText );
+            changeHolder.addedAttribute( (Attr)comparison.getTestDetails().getTarget(), nodeText, attributeText );
 
             final String controlNodeText = printNode.nodeToString( xmlDomUtils.findNode( controlDoc, comparison.getControlDetails().getParentXPath() ) );
             final String controlAttributeText = printNode.attrToString( (Attr)comparison.getControlDetails().getTarget() );
-            changeHolder.removedAttribute( controlNodeText, controlAttributeText );
+            changeHolder.removedAttribute( (Attr)comparison.getControlDetails().getTarget(), controlNodeText, controlAttributeText );
             // add the second part of parent text for the conventional diffs
             semanticDiff.updateHolder( changeHolder, NodeChangesHolder.OpType.REMOVED, holderNodeText( controlDoc, comparison.getControlDetails() ) );
             changeHolder.attachAutoDiffs();
@@ -14,6 +14,8 @@
 
 package io.github.valters.xsdiff.report;
 
+import java.util.concurrent.ExecutionException;
+
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -26,6 +28,7 @@ import javax.xml.transform.sax.SAXTransformerFactory;
 import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
@@ -35,6 +38,10 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 public class XmlDomUtils {
 
@@ -46,8 +53,21 @@ public class XmlDomUtils {
 
     private static final char XPATH_DELIMITER = '/';
 
+    /** how many compiled xpath expressions to keep around: xmlunit produces a limited set of paths per document, so this is plenty */
+    public static final int XPATH_CACHE_SIZE = 4096;
+
     private final XPath xpath = createXPath();
 
+    /** same paths are looked up repeatedly (target, parent, wide context of every difference), avoid re-compiling them */
+    private final Cache<String, XPathExpression> compiledXpaths = CacheBuilder.newBuilder()
+            .maximumSize( XPATH_CACHE_SIZE )
+            .recordStats()
+            .build();
+
+    /** factory lookup goes through service loader, and transformer setup is not free either: keep one of each per thread */
+    private static final ThreadLocal<Transformer> FRAGMENT_TRANSFORMER = new ThreadLocal<>();
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = new ThreadLocal<>();
+
     /** get a namespace aware builder */
     public static DocumentBuilder documentBuilder() throws ParserConfigurationException {
         final DocumentBuilderFactory dbfac = DocumentBuilderFactory.newInstance();
@@ -56,6 +76,19 @@ public class XmlDomUtils {
         return docBuilder;
     }
 
+    /** get a namespace aware builder owned by current thread: reset before it is handed out */
+    public static DocumentBuilder pooledDocumentBuilder() throws ParserConfigurationException {
+        final DocumentBuilder docBuilder = DOCUMENT_BUILDER.get();
+        if( docBuilder == null ) {
+            final DocumentBuilder newBuilder = documentBuilder();
+            DOCUMENT_BUILDER.set( newBuilder );
+            return newBuilder;
+        }
+
+        docBuilder.reset();
+        return docBuilder;
+    }
+
     /** make XPath with XMLSchema namespacing support */
     public static XPath createXPath() {
         final XPath xp = XPathFactory.newInstance().newXPath();
@@ -65,7 +98,7 @@ public class XmlDomUtils {
 
     public Node findNode( final Document doc, final String xpathExpr ) {
         try {
-            final Node node = (Node) xpath.evaluate( xpathExpr, doc, XPathConstants.NODE );
+            final Node node = evaluate( doc, xpathExpr );
             if( node == null ) {
                 System.out.println( "Failed to get node: [" + xpathExpr + "] from [" + doc + "]" );
             }
@@ -76,6 +109,34 @@ public class XmlDomUtils {
         }
     }
 
+    /** xmlunit paths are simple positional steps, so walk the DOM directly and only use XPath engine for anything more complex */
+    private Node evaluate( final Document doc, final String xpathExpr ) throws XPathExpressionException {
+        final PositionalXPath positional = PositionalXPath.compile( xpathExpr );
+        if( positional != null ) {
+            final XPathNodeIndex index = XPathNodeIndex.of( doc );
+            return index != null ? positional.evaluate( index ) : positional.evaluate( doc );
+        }
+        return (Node) compile( xpathExpr ).evaluate( doc, XPathConstants.NODE );
+    }
+
+    /** get compiled expression from cache, compile on first use */
+    private XPathExpression compile( final String xpathExpr ) throws XPathExpressionException {
+        try {
+            return compiledXpaths.get( xpathExpr, () -> xpath.compile( xpathExpr ) );
+        }
+        catch( final ExecutionException | UncheckedExecutionException e ) {
+            if( e.getCause() instanceof XPathExpressionException ) {
+                throw (XPathExpressionException) e.getCause();
+            }
+            throw new RuntimeException( "Failed to compile xpath: [" + xpathExpr + "]", e.getCause() );
+        }
+    }
+
+    /** hit/miss counters of the compiled xpath cache */
+    public CacheStats xpathCacheStats() {
+        return compiledXpaths.stats();
+    }
+
     public static long countChars( final String testString, final char match ) {
         return testString.codePoints().filter( ch -> ch == match ).count();
     }
@@ -129,10 +190,28 @@ public class XmlDomUtils {
     /** set up transformer to output a standalone "fragment" - suppressing xml declaration */
     public static Transformer newFragmentTransformer( final TransformerFactory tf ) throws TransformerConfigurationException {
         final Transformer transformer = tf.newTransformer();
+        configureFragmentTransformer( transformer );
+        return transformer;
+    }
+
+    private static void configureFragmentTransformer( final Transformer transformer ) {
         setUtfEncoding( transformer );
         setIndentFlag( transformer );
         setTransformerIndent( transformer );
         outputStandaloneFragment( transformer );
+    }
+
+    /** fragment transformer owned by current thread: reset and configured again before it is handed out */
+    public static Transformer pooledFragmentTransformer() throws TransformerConfigurationException, TransformerFactoryConfigurationError {
+        final Transformer transformer = FRAGMENT_TRANSFORMER.get();
+        if( transformer == null ) {
+            final Transformer newTransformer = newFragmentTransformer( transformerFactory() );
+            FRAGMENT_TRANSFORMER.set( newTransformer );
+            return newTransformer;
+        }
+
+        transformer.reset();
+        configureFragmentTransformer( transformer );
         return transformer;
     }
 
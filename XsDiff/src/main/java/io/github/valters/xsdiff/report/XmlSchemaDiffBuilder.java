@@ -14,45 +14,162 @@
 
 package io.github.valters.xsdiff.report;
 
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.UnaryOperator;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.dom.DOMSource;
+
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 import org.xmlunit.builder.DiffBuilder;
 import org.xmlunit.builder.Input;
-import org.xmlunit.diff.DefaultNodeMatcher;
+import org.xmlunit.diff.ComparisonController;
+import org.xmlunit.diff.ComparisonControllers;
+import org.xmlunit.diff.ComparisonListener;
+import org.xmlunit.diff.DOMDifferenceEngine;
 import org.xmlunit.diff.Diff;
-import org.xmlunit.diff.ElementSelector;
-import org.xmlunit.diff.ElementSelectors;
+import org.xmlunit.diff.Difference;
+import org.xmlunit.diff.NodeMatcher;
+import org.xmlunit.input.CommentLessSource;
+import org.xmlunit.input.WhitespaceStrippedSource;
+import org.xmlunit.util.Predicate;
 
 /** Configures XmlUnit DiffBuilder to be XML Schema (XSD) semantics aware */
 public class XmlSchemaDiffBuilder {
 
+    private final NodeMatcher nodeMatcher = new SchemaNodeMatcher();
+
+    private boolean pruneIdenticalSubtrees = true;
+
+    /** diff top-level components in parallel, when set */
+    private ForkJoinPool pool;
+
+    /** parts of schema that are not compared */
+    private IgnoreRules ignoreRules = IgnoreRules.NONE;
+
+    /** decides when to stop diffing */
+    private ComparisonController comparisonController = ComparisonControllers.Default;
+
+    /** compare every node, even in subtrees that are known to be identical */
+    public XmlSchemaDiffBuilder withoutSubtreePruning() {
+        pruneIdenticalSubtrees = false;
+        return this;
+    }
+
+    /** diff each changed top-level component (type, element, group...) as a separate task on the pool; differences are reported in the same order as when diffing on single thread */
+    public XmlSchemaDiffBuilder withParallelism( final ForkJoinPool pool ) {
+        this.pool = pool;
+        return this;
+    }
+
+    /** stop diffing as soon as the controller has seen enough differences (for example, when only a yes/no answer is needed) */
+    public XmlSchemaDiffBuilder withComparisonController( final ComparisonController comparisonController ) {
+        this.comparisonController = comparisonController;
+        return this;
+    }
+
+    /** do not compare nodes or attributes matched by the rules: they are filtered out while comparing, so they never become differences */
+    public XmlSchemaDiffBuilder withIgnoreRules( final IgnoreRules ignoreRules ) {
+        this.ignoreRules = ignoreRules;
+        return this;
+    }
+
     public Diff compare( Document controlDoc, Document testDoc ) {
 
-        ElementSelector schemaElementSelector = ElementSelectors.conditionalBuilder()
-                .whenElementIsNamed( "element" ).thenUse( ElementSelectors.byNameAndAttributes( "name" ) )
-                .elseUse( ElementSelectors.byName )
-                .build();
+        // strip up front (same as ignoreWhitespace() and ignoreComments() would), so that subtree fingerprints see what xmlunit sees
+        DOMSource control = ignoreWhitespaceAndComments( controlDoc );
+        DOMSource test = ignoreWhitespaceAndComments( testDoc );
 
-        ElementSelector simpleTypeSelector = ElementSelectors.conditionalBuilder()
-                .whenElementIsNamed( "simpleType" ).thenUse( ElementSelectors.byNameAndAttributes( "name" ) )
-                .elseUse( schemaElementSelector )
-                .build();
+        Set<Node> identicalSubtrees = identicalSubtrees( control, test );
 
-        ElementSelector complexTypeSelector = ElementSelectors.conditionalBuilder()
-                .whenElementIsNamed( "complexType" ).thenUse( ElementSelectors.byNameAndAttributes( "name" ) )
-                .elseUse( simpleTypeSelector )
-                .build();
+        if( pool != null ) {
+            Diff xmlDiff = parallelDiff( control, test, identicalSubtrees );
+            if( xmlDiff != null ) {
+                return xmlDiff;
+            }
+        }
+
+        return diffBuilder( control, test, identicalSubtrees ).build();
+    }
 
+    /**
+     * Hand each difference to the listener as soon as it is found, without collecting them into a {@link Diff}, so that memory
+     * does not grow with the number of differences. Differences come in the same order as from {@link #compare(Document, Document)}.
+     * (When components are diffed in parallel, the merged differences are collected first, then passed on.)
+     */
+    public void compare( Document controlDoc, Document testDoc, ComparisonListener differenceListener ) {
 
-        Diff xmlDiff = DiffBuilder.compare( Input.fromDocument( controlDoc ) )
-                .withTest( Input.fromDocument( testDoc ) )
-                .ignoreWhitespace()
-                .ignoreComments()
+        DOMSource control = ignoreWhitespaceAndComments( controlDoc );
+        DOMSource test = ignoreWhitespaceAndComments( testDoc );
+
+        Set<Node> identicalSubtrees = identicalSubtrees( control, test );
+
+        if( pool != null ) {
+            Diff xmlDiff = parallelDiff( control, test, identicalSubtrees );
+            if( xmlDiff != null ) {
+                for( Difference diff : xmlDiff.getDifferences() ) {
+                    differenceListener.comparisonPerformed( diff.getComparison(), diff.getResult() );
+                }
+                return;
+            }
+        }
+
+        // same settings as diffBuilder(), minus the collecting of results
+        DOMDifferenceEngine engine = new DOMDifferenceEngine();
+        engine.setNodeMatcher( nodeMatcher );
+        engine.setNodeFilter( skipChildrenOf( identicalSubtrees, UnaryOperator.identity() ) );
+        engine.setAttributeFilter( attr -> ! ignoreRules.isIgnored( attr ) );
+        engine.setNamespaceContext( new StaticNamespaceContext().prefixToUri() );
+        engine.setComparisonController( comparisonController );
+        engine.addDifferenceListener( differenceListener );
+        engine.compare( control, test );
+    }
+
+    private Set<Node> identicalSubtrees( DOMSource control, DOMSource test ) {
+        return pruneIdenticalSubtrees
+                ? SubtreeFingerprint.identicalSubtrees( control.getNode(), test.getNode(), nodeMatcher )
+                : Collections.<Node>emptySet();
+    }
+
+    private Diff parallelDiff( DOMSource control, DOMSource test, Set<Node> identicalSubtrees ) {
+        return new ParallelSchemaDiff( this, nodeMatcher, new StaticNamespaceContext().prefixToUri(), pool ).compare( control, test, identicalSubtrees );
+    }
+
+    /** xmlunit builder with XSD aware settings; children of given nodes are not compared */
+    DiffBuilder diffBuilder( Source control, Source test, Set<Node> skipChildren ) {
+        return diffBuilder( control, test, skipChildren, UnaryOperator.identity() );
+    }
+
+    /**
+     * @param original maps compared node to the node of original document, where ignore rules are checked: a component
+     * copied into its own document must not have its children mistaken for top-level components
+     */
+    DiffBuilder diffBuilder( Source control, Source test, Set<Node> skipChildren, UnaryOperator<Node> original ) {
+        return DiffBuilder.compare( control )
+                .withTest( test )
                 .checkForSimilar()
                 .checkForIdentical()
-                .withNodeMatcher( new DefaultNodeMatcher( complexTypeSelector ) )
-                .withNamespaceContext( new StaticNamespaceContext().prefixToUri() )
-                .build();
+                .withNodeMatcher( nodeMatcher )
+                .withComparisonController( comparisonController )
+                .withNodeFilter( skipChildrenOf( skipChildren, original ) )
+                .withAttributeFilter( attr -> ! ignoreRules.isIgnored( attr ) )
+                .withNamespaceContext( new StaticNamespaceContext().prefixToUri() );
+    }
+
+    private static DOMSource ignoreWhitespaceAndComments( Document doc ) {
+        return new CommentLessSource( new WhitespaceStrippedSource( Input.fromDocument( doc ).build() ) );
+    }
+
+    /** elements are still compared themselves (so that xpaths and sibling positions stay the same), only their children are hidden; ignored nodes are hidden too */
+    private Predicate<Node> skipChildrenOf( final Set<Node> parents, final UnaryOperator<Node> original ) {
+        return node -> node.getNodeType() != Node.DOCUMENT_TYPE_NODE && ! parents.contains( node.getParentNode() ) && ! ignoreRules.isIgnored( original.apply( node ) );
+    }
 
-        return xmlDiff;
+    /** @return true if node is not compared at all */
+    boolean isIgnored( final Node node ) {
+        return ignoreRules.isIgnored( node );
     }
 }
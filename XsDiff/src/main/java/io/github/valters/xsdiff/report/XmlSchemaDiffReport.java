@@ -14,8 +14,17 @@
 
 package io.github.valters.xsdiff.report;
 
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
 import org.w3c.dom.Document;
 
+import io.github.valters.xsdiff.format.RenderBudget;
+import io.github.valters.xsdiff.format.RenderRunner;
+import io.github.valters.xsdiff.format.Renderer;
 import io.github.valters.xsdiff.format.SemanticDiffFormatter;
 
 /** XML Schema (XSD) comparison/report generator */
@@ -23,18 +32,110 @@ public class XmlSchemaDiffReport {
 
     private final HtmlContentOutput output;
 
+    /** diff top-level components on this pool, when set */
+    private ForkJoinPool pool;
+
+    /** differences found by last {@link #runDiff(Document, Document)} */
+    private int differenceCount;
+
+    /** set by last {@link #runDiff(Document, Document)} when comparison was stopped over the difference limit */
+    private boolean stopped;
+
+    /** set by last {@link #runDiff(Document, Document)} when a time limited view was abandoned */
+    private boolean viewsAbandoned;
+
+    /** print at most this many differences; 0 for no limit */
+    private int maxDifferences;
+
+    private IgnoreRules ignoreRules = IgnoreRules.NONE;
+
+    private Set<Renderer> renderers = EnumSet.allOf( Renderer.class );
+
+    private final Map<Renderer, RenderBudget> budgets = new EnumMap<>( Renderer.class );
+
+    /** runs time limited views, shared with other reports; null to use own */
+    private RenderRunner renderRunner;
+
     public XmlSchemaDiffReport( final HtmlContentOutput output ) {
         this.output = output;
     }
 
+    /** compare changed top-level components, and produce views of changes, in parallel; report stays the same as when comparing on single thread */
+    public XmlSchemaDiffReport withParallelism( final ForkJoinPool pool ) {
+        this.pool = pool;
+        return this;
+    }
+
+    /** show only first differences in the report, and stop comparing soon after; the report tells that there are more */
+    public XmlSchemaDiffReport withMaxDifferences( final int maxDifferences ) {
+        this.maxDifferences = maxDifferences;
+        return this;
+    }
+
+    /** leave parts of schemas out of comparison */
+    public XmlSchemaDiffReport withIgnoreRules( final IgnoreRules ignoreRules ) {
+        this.ignoreRules = ignoreRules;
+        return this;
+    }
+
+    /** views (tabs) to produce for each changed node: others are not computed at all */
+    public XmlSchemaDiffReport withRenderers( final Set<Renderer> renderers ) {
+        this.renderers = renderers;
+        return this;
+    }
+
+    /** limit time and input size of a text diff view (histogram, daisy or wikEd): over budget, a note and histogram view are shown instead */
+    public XmlSchemaDiffReport withBudget( final Renderer renderer, final RenderBudget budget ) {
+        this.budgets.put( renderer, budget );
+        return this;
+    }
+
+    /** run time limited views on this runner, shared by all reports of a run: at most its number of threads are busy with them */
+    public XmlSchemaDiffReport withRenderRunner( final RenderRunner renderRunner ) {
+        this.renderRunner = renderRunner;
+        return this;
+    }
+
     public void runDiff( final Document controlDoc, final Document testDoc ) {
 
 
-        final XmlDiff xmlDiff = new XmlDiff( controlDoc, testDoc, new XmlSchemaDiffBuilder() );
-        final SemanticDiffFormatter semanticDiff = new SemanticDiffFormatter();
+        final NodeToString printNode = new NodeToString();
+        final XmlSchemaDiffBuilder diffBuilder = new XmlSchemaDiffBuilder().withIgnoreRules( ignoreRules );
+        if( pool != null ) {
+            diffBuilder.withParallelism( pool );
+        }
+        final XmlDiff xmlDiff = new XmlDiff( controlDoc, testDoc, diffBuilder, printNode ).withNodeIndex().withStreaming().withMaxDifferences( maxDifferences );
+        final SemanticDiffFormatter semanticDiff = new SemanticDiffFormatter( printNode ).withRenderers( renderers );
+        if( pool != null ) {
+            semanticDiff.withParallelism( pool );
+        }
+        budgets.forEach( semanticDiff::withBudget );
+        semanticDiff.withRenderRunner( renderRunner );
         xmlDiff.run( output, semanticDiff );
+        differenceCount = xmlDiff.getDifferenceCount();
+
+        stopped = xmlDiff.isStopped();
+        if( stopped ) {
+            output.write( "Too many differences: only first " + maxDifferences + " of at least " + differenceCount + " are shown, comparison was stopped." );
+        }
 
         semanticDiff.printDiff( output );
+        viewsAbandoned = semanticDiff.hasAbandonedViews();
+    }
+
+    /** @return differences found; only a lower bound if {@link #isStopped()} */
+    public int getDifferenceCount() {
+        return differenceCount;
+    }
+
+    /** @return true if comparison was stopped over the difference limit, so not all differences were counted */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /** @return true if a view ran out of its time budget and a fallback was shown: report depends on how busy the machine was */
+    public boolean hasAbandonedViews() {
+        return viewsAbandoned;
     }
 
 }
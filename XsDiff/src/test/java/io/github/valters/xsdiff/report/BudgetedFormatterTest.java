@@ -0,0 +1,150 @@
+package io.github.valters.xsdiff.report;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.helpers.DefaultHandler;
+
+import io.github.valters.xsdiff.format.BudgetedFormatter;
+import io.github.valters.xsdiff.format.ContentHandlerFormatter;
+import io.github.valters.xsdiff.format.DiffOutputFormatter;
+import io.github.valters.xsdiff.format.HistogramDiffFormatter;
+import io.github.valters.xsdiff.format.RenderBudget;
+import io.github.valters.xsdiff.format.RenderRunner;
+
+public class BudgetedFormatterTest {
+
+    private static final String OLD_TEXT = "a\n b\n c";
+    private static final String NEW_TEXT = "a\n x\n c";
+
+    /** own runner for each test, so that views abandoned by one test do not hold up the next */
+    private RenderRunner runner;
+
+    @Before
+    public void setUp() {
+        runner = new RenderRunner( 2 );
+    }
+
+    @After
+    public void tearDown() {
+        runner.close();
+    }
+
+    @Test
+    public void shouldProduceViewWithinBudget() {
+        final DiffOutputFormatter fixture = BudgetedFormatter.output( "histogram", new HistogramDiffFormatter( OLD_TEXT, NEW_TEXT ), RenderBudget.of( 10_000, 1024 ), 14, runner );
+        final DiffTestFixture.DummyOutput output = DiffTestFixture.output();
+        fixture.printDiff( output );
+
+        assertThat( output.getResults().get( 1 ).getType(), is( DiffTestFixture.OperationType.REMOVE_TEXT ) );
+        assertThat( output.getResults().get( 1 ).getText(), is( " b\n" ) );
+        assertThat( output.getResults().get( 2 ).getType(), is( DiffTestFixture.OperationType.ADD_TEXT ) );
+    }
+
+    @Test
+    public void shouldSkipTooLargeInput() {
+        final DiffOutputFormatter fixture = BudgetedFormatter.output( "histogram", new HistogramDiffFormatter( OLD_TEXT, NEW_TEXT ), RenderBudget.of( 0, 10 ), 14, null );
+        final DiffTestFixture.DummyOutput output = DiffTestFixture.output();
+        fixture.printDiff( output );
+
+        assertThat( output.getResults().size(), is( 2 ) );
+        assertThat( output.getResults().get( 0 ).getText(), is( "(histogram view skipped: input of 14 characters is over the limit of 10)\n" ) );
+        assertThat( output.getResults().get( 1 ).getText(), is( "(empty)" ) );
+    }
+
+    @Test
+    public void shouldAbandonSlowView() {
+        final DiffOutputFormatter slow = output -> {
+            output.addedPart( "never shown" );
+            sleep( 2_000 );
+        };
+        final DiffOutputFormatter fixture = BudgetedFormatter.output( "slow", slow, RenderBudget.of( 50, 0 ), 14, runner );
+        final DiffTestFixture.DummyOutput output = DiffTestFixture.output();
+
+        final long started = System.nanoTime();
+        fixture.printDiff( output );
+
+        assertThat( ( System.nanoTime() - started ) / 1_000_000, lessThan( 1_500L ) );
+        assertThat( output.getResults().size(), is( 2 ) );
+        assertThat( output.getResults().get( 0 ).getText(), is( "(slow view skipped: took longer than 50 ms)\n" ) );
+        assertThat( output.getResults().get( 1 ).getText(), is( "(empty)" ) );
+    }
+
+    @Test
+    public void shouldTellOnlyWhenViewIsAbandoned() {
+        final AtomicInteger abandoned = new AtomicInteger();
+        final DiffOutputFormatter slow = output -> sleep( 2_000 );
+        BudgetedFormatter.output( "slow", slow, RenderBudget.of( 50, 0 ), 14, runner, abandoned::incrementAndGet ).printDiff( DiffTestFixture.output() );
+        assertThat( abandoned.get(), is( 1 ) );
+
+        BudgetedFormatter.output( "large", slow, RenderBudget.of( 50, 10 ), 14, runner, abandoned::incrementAndGet ).printDiff( DiffTestFixture.output() );
+        BudgetedFormatter.output( "fast", new HistogramDiffFormatter( OLD_TEXT, NEW_TEXT ), RenderBudget.of( 5_000, 0 ), 14, runner, abandoned::incrementAndGet )
+                .printDiff( DiffTestFixture.output() );
+        assertThat( abandoned.get(), is( 1 ) );
+    }
+
+    @Test
+    public void shouldShowFallbackInsteadOfSlowContent() {
+        final ContentHandlerFormatter slow = handler -> sleep( 2_000 );
+        final ContentHandlerFormatter fixture = BudgetedFormatter.content( "daisy", slow, RenderBudget.of( 50, 0 ), 14, new HistogramDiffFormatter( OLD_TEXT, NEW_TEXT ), runner );
+        final StringBuilder text = new StringBuilder();
+        fixture.printDiff( new DefaultHandler() {
+            @Override
+            public void characters( final char[] ch, final int start, final int length ) {
+                text.append( ch, start, length );
+            }
+        } );
+
+        assertThat( text.toString(), containsString( "(daisy view skipped: took longer than 50 ms)" ) );
+        assertThat( text.toString(), containsString( " x" ) );
+    }
+
+    @Test
+    public void shouldNotStartViewWhileAbandonedOneRuns() {
+        final DiffOutputFormatter slow = output -> sleepUninterruptibly( 1_000 );
+        final DiffOutputFormatter fixture = BudgetedFormatter.output( "stuck", slow, RenderBudget.of( 50, 0 ), 14, runner );
+        fixture.printDiff( DiffTestFixture.output() );
+
+        final DiffTestFixture.DummyOutput output = DiffTestFixture.output();
+        BudgetedFormatter.output( "stuck", new HistogramDiffFormatter( OLD_TEXT, NEW_TEXT ), RenderBudget.of( 5_000, 0 ), 14, runner ).printDiff( output );
+
+        assertThat( output.getResults().get( 0 ).getText(), is( "(stuck view skipped: an earlier stuck view is still running over its budget)\n" ) );
+    }
+
+    @Test
+    public void shouldParseBudget() {
+        assertThat( RenderBudget.parse( "5000/512" ).getTimeoutMillis(), is( 5000L ) );
+        assertThat( RenderBudget.parse( "5000/512" ).getMaxInputLength(), is( 512 * 1024 ) );
+        assertThat( RenderBudget.parse( "250" ).getMaxInputLength(), is( 0 ) );
+        assertThat( RenderBudget.parse( "0/0" ), is( RenderBudget.UNLIMITED ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void shouldRejectInvalidBudget() {
+        RenderBudget.parse( "fast" );
+    }
+
+    /** like diff libraries: does not stop when interrupted */
+    private static void sleepUninterruptibly( final long millis ) {
+        final long end = System.currentTimeMillis() + millis;
+        while( System.currentTimeMillis() < end ) {
+            sleep( end - System.currentTimeMillis() );
+        }
+    }
+
+    private static void sleep( final long millis ) {
+        try {
+            Thread.sleep( millis );
+        }
+        catch( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
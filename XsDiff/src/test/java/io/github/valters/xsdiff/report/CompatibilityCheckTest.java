@@ -0,0 +1,99 @@
+package io.github.valters.xsdiff.report;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.parsers.DocumentBuilder;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import io.github.valters.xsdiff.report.CompatibilityCheck.Change;
+import io.github.valters.xsdiff.report.CompatibilityCheck.Verdict;
+
+public class CompatibilityCheckTest {
+
+    private static final String SCHEMA_START = "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>";
+    private static final String SCHEMA_END = "</xs:schema>";
+
+    private static final String TYPE_START = "<xs:complexType name='T'><xs:sequence><xs:element name='a' type='xs:string'/>";
+    private static final String TYPE_END = "</xs:sequence></xs:complexType>";
+
+    private static DocumentBuilder docBuilder;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        docBuilder = XmlDomUtils.documentBuilder();
+    }
+
+    @Test
+    public void shouldFindNoChanges() throws Exception {
+        assertThat( check( TYPE_START + TYPE_END, TYPE_START + TYPE_END ), is( Verdict.IDENTICAL ) );
+    }
+
+    @Test
+    public void shouldAllowNewComponentsAndOptionalParts() throws Exception {
+        assertThat( check( TYPE_START + TYPE_END, TYPE_START + TYPE_END + "<xs:element name='e' type='T'/>" ), is( Verdict.ADDITIVE ) );
+        assertThat( check( TYPE_START + TYPE_END, TYPE_START + "<xs:element name='b' minOccurs='0'/>" + TYPE_END ), is( Verdict.ADDITIVE ) );
+        assertThat( check( "<xs:element name='e'><xs:annotation><xs:documentation>old</xs:documentation></xs:annotation></xs:element>",
+                "<xs:element name='e'><xs:annotation><xs:documentation>new</xs:documentation></xs:annotation></xs:element>" ), is( Verdict.ADDITIVE ) );
+    }
+
+    @Test
+    public void shouldAllowOptionalPartInsertedBeforeOthers() throws Exception {
+        final CompatibilityCheck check = new CompatibilityCheck( Verdict.BREAKING );
+        check.check( parse( TYPE_START + TYPE_END ),
+                parse( "<xs:complexType name='T'><xs:sequence><xs:element name='b' minOccurs='0'/><xs:element name='a' type='xs:string'/>" + TYPE_END ) );
+
+        assertThat( check.getVerdict(), is( Verdict.ADDITIVE ) );
+        assertThat( check.getChanges().get( "complexType" ).get( Change.ADDED ), is( 1 ) );
+        assertThat( check.getChanges().get( "complexType" ).get( Change.MODIFIED ), nullValue() );
+    }
+
+    @Test
+    public void shouldNotCountSiblingsShiftedByNewComponent() throws Exception {
+        final CompatibilityCheck check = new CompatibilityCheck( Verdict.BREAKING );
+        check.check( parse( "<xs:element name='e'/>" + TYPE_START + TYPE_END ), parse( "<xs:element name='n'/><xs:element name='e'/>" + TYPE_START + TYPE_END ) );
+
+        assertThat( check.getVerdict(), is( Verdict.ADDITIVE ) );
+        assertThat( check.getChanges().keySet(), contains( "element" ) );
+        assertThat( check.getChanges().get( "element" ).get( Change.ADDED ), is( 1 ) );
+        assertThat( check.getChanges().get( "element" ).get( Change.MODIFIED ), nullValue() );
+    }
+
+    @Test
+    public void shouldFindReorderedSequence() throws Exception {
+        assertThat( check( TYPE_START + "<xs:element name='b'/>" + TYPE_END, "<xs:complexType name='T'><xs:sequence><xs:element name='b'/><xs:element name='a' type='xs:string'/>" + TYPE_END ),
+                is( Verdict.BREAKING ) );
+    }
+
+    @Test
+    public void shouldFindBreakingChanges() throws Exception {
+        assertThat( check( TYPE_START + TYPE_END, TYPE_START + "<xs:element name='b'/>" + TYPE_END ), is( Verdict.BREAKING ) );
+        assertThat( check( TYPE_START + "<xs:element name='b' minOccurs='0'/>" + TYPE_END, TYPE_START + TYPE_END ), is( Verdict.BREAKING ) );
+        assertThat( check( TYPE_START + TYPE_END, TYPE_START.replace( "xs:string", "xs:int" ) + TYPE_END ), is( Verdict.BREAKING ) );
+    }
+
+    @Test
+    public void shouldCountChangesByComponentKind() throws Exception {
+        final CompatibilityCheck check = new CompatibilityCheck( Verdict.BREAKING );
+        check.check( parse( TYPE_START + TYPE_END + "<xs:element name='e'/>" ), parse( TYPE_START + "<xs:element name='b'/>" + TYPE_END ) );
+
+        assertThat( check.getVerdict(), is( Verdict.BREAKING ) );
+        assertThat( check.getChanges().get( "complexType" ).get( Change.ADDED ), is( 1 ) );
+    }
+
+    private static Verdict check( final String control, final String test ) throws Exception {
+        return new CompatibilityCheck( Verdict.BREAKING ).check( parse( control ), parse( test ) );
+    }
+
+    private static Document parse( final String components ) throws Exception {
+        return docBuilder.parse( new ByteArrayInputStream( ( SCHEMA_START + components + SCHEMA_END ).getBytes( StandardCharsets.UTF_8 ) ) );
+    }
+}
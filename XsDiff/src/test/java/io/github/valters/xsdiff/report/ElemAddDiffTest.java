@@ -4,15 +4,27 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.EnumSet;
 
 import javax.xml.parsers.DocumentBuilder;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.Matchers.greaterThan;
+
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
 
+import io.github.valters.xsdiff.format.RenderBudget;
+import io.github.valters.xsdiff.format.Renderer;
+import io.github.valters.xsdiff.format.SemanticDiffFormatter;
+
 public class ElemAddDiffTest {
 
     protected static final String TESTDATA_FOLDER = "./src/test/resources/unit/";
@@ -78,6 +90,72 @@ public class ElemAddDiffTest {
         output.finishOutput();
     }
 
+    @Test
+    public void shouldSerializeSameParentOnlyOnce() throws Exception {
+        final Document controlDoc = docBuilder.parse( testFile( "simple-seq-len1.xsd" ) );
+        final Document testDoc = docBuilder.parse( testFile( "simple-seq-len2.xsd" ) );
+
+        final NodeToString printNode = new NodeToString();
+        final HtmlContentOutput output = HtmlContentOutput.startOutput( out, "diff-report-seqlen-memo.html" );
+        new XmlDiff( controlDoc, testDoc, new XmlSchemaDiffBuilder(), printNode ).run( output, new SemanticDiffFormatter( printNode ) );
+        output.finishOutput();
+
+        assertThat( printNode.getSavedSerializations(), greaterThan( 0 ) );
+    }
+
+    @Test
+    public void shouldCountDifferencesOverLimit() throws Exception {
+        final Document controlDoc = docBuilder.parse( testFile( "attr-mod1.xsd" ) );
+        final Document testDoc = docBuilder.parse( testFile( "attr-mod2.xsd" ) );
+
+        final NodeToString printNode = new NodeToString();
+        final HtmlContentOutput output = HtmlContentOutput.startOutput( out, "diff-report-max-diff.html" );
+        final XmlDiff xmlDiff = new XmlDiff( controlDoc, testDoc, new XmlSchemaDiffBuilder(), printNode ).withMaxDifferences( 2 );
+        xmlDiff.run( output, new SemanticDiffFormatter( printNode ) );
+        output.finishOutput();
+
+        assertThat( xmlDiff.isStopped(), is( true ) );
+        assertThat( xmlDiff.getDifferenceCount(), is( 3 ) );
+        assertThat( xmlDiff.getSkippedDifferences().values().stream().mapToInt( Integer::intValue ).sum(), is( 1 ) );
+    }
+
+    @Test( expected = IllegalStateException.class )
+    public void shouldFailWhenCountIsReadBeforeRun() throws Exception {
+        final Document controlDoc = docBuilder.parse( testFile( "attr-mod1.xsd" ) );
+        final Document testDoc = docBuilder.parse( testFile( "attr-mod2.xsd" ) );
+
+        new XmlDiff( controlDoc, testDoc, new XmlSchemaDiffBuilder(), new NodeToString() ).getDifferenceCount();
+    }
+
+    @Test
+    public void shouldProduceOnlySelectedRenderers() throws Exception {
+        final Document controlDoc = docBuilder.parse( testFile( "attr-mod1.xsd" ) );
+        final Document testDoc = docBuilder.parse( testFile( "attr-mod2.xsd" ) );
+
+        final HtmlContentOutput output = HtmlContentOutput.startOutput( out, "diff-report-renderers.html" );
+        new XmlSchemaDiffReport( output ).withRenderers( EnumSet.of( Renderer.SEMANTIC, Renderer.HISTOGRAM ) ).runDiff( controlDoc, testDoc );
+        output.finishOutput();
+
+        final String report = new String( Files.readAllBytes( new File( out, "diff-report-renderers.html" ).toPath() ), StandardCharsets.UTF_8 );
+        assertThat( report, containsString( ">histogram</a>" ) );
+        assertThat( report, not( containsString( ">daisy</a>" ) ) );
+        assertThat( report, not( containsString( "wikEdDiff" ) ) );
+    }
+
+    @Test
+    public void shouldShowHistogramWhenDaisyIsOverBudget() throws Exception {
+        final Document controlDoc = docBuilder.parse( testFile( "attr-mod1.xsd" ) );
+        final Document testDoc = docBuilder.parse( testFile( "attr-mod2.xsd" ) );
+
+        final HtmlContentOutput output = HtmlContentOutput.startOutput( out, "diff-report-budget.html" );
+        new XmlSchemaDiffReport( output ).withRenderers( EnumSet.of( Renderer.DAISY ) ).withBudget( Renderer.DAISY, RenderBudget.of( 0, 10 ) ).runDiff( controlDoc, testDoc );
+        output.finishOutput();
+
+        final String report = new String( Files.readAllBytes( new File( out, "diff-report-budget.html" ).toPath() ), StandardCharsets.UTF_8 );
+        assertThat( report, containsString( "daisy view skipped: input of " ) );
+        assertThat( report, containsString( "diff-tag-added" ) );
+    }
+
     private InputSource testFile( final String fileName ) throws IOException {
         return new InputSource( Files.newBufferedReader( fs.getPath( TESTDATA_FOLDER, fileName  ) ) );
     }
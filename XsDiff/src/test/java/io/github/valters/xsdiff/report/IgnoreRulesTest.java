@@ -0,0 +1,82 @@
+package io.github.valters.xsdiff.report;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.xml.parsers.DocumentBuilder;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import com.google.common.collect.Iterables;
+
+public class IgnoreRulesTest {
+
+    private static final String SCHEMA_START = "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>";
+    private static final String SCHEMA_END = "</xs:schema>";
+
+    private static DocumentBuilder docBuilder;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        docBuilder = XmlDomUtils.documentBuilder();
+    }
+
+    @Test
+    public void shouldIgnoreAnnotations() throws Exception {
+        final IgnoreRules rules = IgnoreRules.parse( Arrays.asList( "# documentation churn", "xs:annotation" ) );
+        final String control = "<xs:element name='e'><xs:annotation><xs:documentation>old</xs:documentation></xs:annotation></xs:element>";
+        final String test = "<xs:element name='e'/><xs:annotation><xs:appinfo>new</xs:appinfo></xs:annotation>";
+
+        assertThat( differences( control, test, IgnoreRules.NONE ), greaterThan( 0 ) );
+        assertThat( differences( control, test, rules ), is( 0 ) );
+    }
+
+    @Test
+    public void shouldIgnoreComponentsByName() throws Exception {
+        final IgnoreRules rules = IgnoreRules.parse( Arrays.asList( "complexType name=Legacy*", "* name=Old?" ) );
+        final String control = "<xs:complexType name='LegacyA'/><xs:element name='Old1'/><xs:element name='Kept'/>";
+        final String test = "<xs:complexType name='LegacyB'/><xs:element name='Kept' type='xs:int'/>";
+
+        assertThat( differences( control, test, rules ), is( 2 ) ); // only attribute added to Kept: attribute lookup and count
+    }
+
+    @Test
+    public void shouldIgnoreAttributes() throws Exception {
+        final IgnoreRules rules = IgnoreRules.parse( Arrays.asList( "@id  # generated" ) );
+        final String control = "<xs:element name='e' id='a1'/>";
+        final String test = "<xs:element name='e' id='b2'/>";
+
+        assertThat( differences( control, test, rules ), is( 0 ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void shouldRejectInvalidRule() {
+        IgnoreRules.parse( Arrays.asList( "complexType Legacy*" ) );
+    }
+
+    private static int differences( final String control, final String test, final IgnoreRules rules ) throws Exception {
+        final int sequential = Iterables.size( new XmlSchemaDiffBuilder().withIgnoreRules( rules ).compare( parse( control ), parse( test ) ).getDifferences() );
+
+        final ForkJoinPool pool = new ForkJoinPool( 2 );
+        try {
+            final int parallel = Iterables.size( new XmlSchemaDiffBuilder().withIgnoreRules( rules ).withParallelism( pool ).compare( parse( control ), parse( test ) ).getDifferences() );
+            assertThat( parallel, is( sequential ) );
+        }
+        finally {
+            pool.shutdown();
+        }
+        return sequential;
+    }
+
+    private static Document parse( final String components ) throws Exception {
+        return docBuilder.parse( new ByteArrayInputStream( ( SCHEMA_START + components + SCHEMA_END ).getBytes( StandardCharsets.UTF_8 ) ) );
+    }
+}
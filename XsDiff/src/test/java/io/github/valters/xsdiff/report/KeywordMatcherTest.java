@@ -0,0 +1,66 @@
+package io.github.valters.xsdiff.report;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.ahocorasick.trie.Emit;
+import org.ahocorasick.trie.Trie;
+import org.ahocorasick.trie.Trie.TrieBuilder;
+import org.junit.Test;
+
+import io.github.valters.xsdiff.format.KeywordMatcher;
+
+public class KeywordMatcherTest {
+
+    @Test
+    public void shouldPreferLongerThenEarlierMatch() {
+        final KeywordMatcher matcher = KeywordMatcher.of( Arrays.asList( "ab", "abc", "cd", "" ) );
+
+        assertThat( describe( matcher.match( "xabcdab" ) ), contains( "1:abc", "5:ab" ) );
+        assertThat( matcher.match( "xyz" ).isEmpty(), is( true ) );
+    }
+
+    @Test
+    public void shouldMatchSameAsTrie() {
+        final Random random = new Random( 42 );
+        for( int round = 0; round < 500; round++ ) {
+            final List<String> keywords = new ArrayList<>();
+            final int count = 1 + random.nextInt( 8 ); // scan and trie
+            for( int i = 0; i < count; i++ ) {
+                keywords.add( randomText( random, 1 + random.nextInt( 4 ) ) );
+            }
+            final String text = randomText( random, 40 );
+
+            final TrieBuilder trie = Trie.builder().removeOverlaps();
+            keywords.forEach( trie::addKeyword );
+            final List<String> expected = new ArrayList<>();
+            for( final Emit emit : trie.build().parseText( text ) ) {
+                expected.add( emit.getStart() + ":" + emit.getKeyword() );
+            }
+
+            assertThat( keywords + " in " + text, describe( KeywordMatcher.of( keywords ).match( text ) ), is( expected ) );
+        }
+    }
+
+    private static String randomText( final Random random, final int length ) {
+        final StringBuilder text = new StringBuilder();
+        for( int i = 0; i < length; i++ ) {
+            text.append( (char) ( 'a' + random.nextInt( 3 ) ) );
+        }
+        return text.toString();
+    }
+
+    private static List<String> describe( final List<KeywordMatcher.Match> matches ) {
+        final List<String> result = new ArrayList<>();
+        for( final KeywordMatcher.Match match : matches ) {
+            result.add( match.getStart() + ":" + match.getKeyword() );
+        }
+        return result;
+    }
+}
@@ -0,0 +1,118 @@
+package io.github.valters.xsdiff.report;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.parsers.DocumentBuilder;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+public class NamespaceStrippingWriterTest {
+
+    protected static final String TESTDATA_FOLDER = "./src/test/resources/unit/";
+
+    private static DocumentBuilder docBuilder;
+
+    private final NamespaceStrippingWriter writer = new NamespaceStrippingWriter();
+
+    private final TransformToString transform = new TransformToString();
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        docBuilder = XmlDomUtils.documentBuilder();
+    }
+
+    @Test
+    public void shouldWriteSameTextAsTransformerForAllNodes() throws Exception {
+        for( final File file : new File( TESTDATA_FOLDER ).listFiles( (dir, name) -> name.endsWith( ".xsd" ) ) ) {
+            final Document doc = docBuilder.parse( file );
+            assertSameText( doc.getDocumentElement(), true );
+        }
+    }
+
+    @Test
+    public void shouldWriteSameTextForMixedContent() throws Exception {
+        final Document doc = parse( "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' xmlns='urn:default' xmlns:t='urn:t' a='1'>\n"
+                + "  <!-- leading comment- -->\n"
+                + "  <xs:annotation><xs:documentation>one &amp; &lt;two&gt; \"three\" 'four' äš€\ttab</xs:documentation></xs:annotation>\n"
+                + "  <xs:element name='a&amp;b' fixed='&lt;&gt;&quot;&apos;&#10;&#9;x'/>\n"
+                + "  <empty></empty>\n"
+                + "  <mixed>before<b>bold</b>\n\nafter<!--c--><i/></mixed>\n"
+                + "  <deep><deeper><deepest>text</deepest><deepest/></deeper>tail</deep>\n"
+                + "  <multi>line one\nline two\n</multi>\n"
+                + "</xs:schema>" );
+        doc.getDocumentElement().appendChild( doc.createComment( "built -- in code-" ) );
+        assertSameText( doc.getDocumentElement(), true );
+    }
+
+    @Test
+    public void shouldLeaveUnusualContentToTransformer() throws Exception {
+        final Document doc = parse( "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' xmlns:t='urn:t'>"
+                + "<a><![CDATA[cdata]]></a>"
+                + "<b t:attr='namespaced'/>"
+                + "<c><n xmlns:n='urn:nested'/></c>"
+                + "<d><?pi data?></d>"
+                + "<e>ok</e>"
+                + "</xs:schema>" );
+        final Node root = doc.getDocumentElement();
+        assertThat( writer.write( root ), nullValue() );
+        assertThat( writer.write( root.getChildNodes().item( 0 ) ), nullValue() );
+        assertThat( writer.write( root.getChildNodes().item( 1 ) ), nullValue() );
+        assertThat( writer.write( root.getChildNodes().item( 2 ) ), nullValue() );
+        assertThat( writer.write( root.getChildNodes().item( 3 ) ), nullValue() );
+        assertThat( writer.write( root.getChildNodes().item( 4 ) ), is( transform.nodeToStringClean( root.getChildNodes().item( 4 ) ) ) );
+        assertThat( writer.write( root.getAttributes().item( 0 ) ), nullValue() );
+    }
+
+    @Test
+    public void shouldRecordPositionsOfNodes() throws Exception {
+        final Document doc = parse( "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'><xs:complexType name='t'><xs:sequence>"
+                + "<xs:element ref='a'/><xs:element ref='a'/>"
+                + "</xs:sequence></xs:complexType></xs:schema>" );
+        final Node type = doc.getDocumentElement().getFirstChild();
+        final Element first = (Element) type.getFirstChild().getFirstChild();
+        final Element second = (Element) first.getNextSibling();
+
+        final NodeText text = new NodeToString().nodeToText( type );
+        assertThat( text.getText(), is( new NodeToString().nodeToString( type ) ) );
+        assertThat( slice( text, type ), is( text.getText() ) );
+        assertThat( slice( text, first ), is( "<element ref=\"a\"/>" ) );
+        assertThat( slice( text, second ), is( "<element ref=\"a\"/>" ) );
+        assertThat( text.getPositions().getStart( second ), not( text.getPositions().getStart( first ) ) ); // same text, told apart by position
+        assertThat( slice( text, second.getAttributeNode( "ref" ) ), is( "ref=\"a\"" ) );
+    }
+
+    private static String slice( final NodeText text, final Node node ) {
+        return text.getText().substring( text.getPositions().getStart( node ), text.getPositions().getEnd( node ) );
+    }
+
+    private static Document parse( final String xml ) throws Exception {
+        return docBuilder.parse( new ByteArrayInputStream( xml.getBytes( StandardCharsets.UTF_8 ) ) );
+    }
+
+    /** writer must either produce exactly the transformer output, or decline */
+    private void assertSameText( final Node node, final boolean mustSupport ) {
+        final String text = writer.write( node );
+        if( mustSupport ) {
+            assertThat( node.toString(), text, notNullValue() );
+        }
+        if( text != null ) {
+            assertThat( node.toString(), text, is( transform.nodeToStringClean( node ) ) );
+        }
+
+        for( Node child = node.getFirstChild(); child != null; child = child.getNextSibling() ) {
+            assertSameText( child, false );
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package io.github.valters.xsdiff.report;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.xml.parsers.DocumentBuilder;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.xmlunit.diff.Comparison;
+import org.xmlunit.diff.Difference;
+
+public class ParallelSchemaDiffTest {
+
+    protected static final String TESTDATA_FOLDER = "./src/test/resources/unit/";
+
+    private static DocumentBuilder docBuilder;
+
+    private static ForkJoinPool pool;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        docBuilder = XmlDomUtils.documentBuilder();
+        pool = new ForkJoinPool( 4 );
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void shouldReportSameDifferencesForFixtures() throws Exception {
+        for( final File control : new File( TESTDATA_FOLDER ).listFiles( (dir, name) -> name.endsWith( "1.xsd" ) ) ) {
+            final File test = new File( control.getParentFile(), control.getName().replace( "1.xsd", "2.xsd" ) );
+            if( ! test.exists() ) {
+                continue;
+            }
+            assertSameDifferences( docBuilder.parse( control ), docBuilder.parse( test ) );
+            assertSameDifferences( docBuilder.parse( test ), docBuilder.parse( control ) );
+        }
+    }
+
+    @Test
+    public void shouldReportSameDifferencesForManyComponents() throws Exception {
+        final StringBuilder control = new StringBuilder( "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' version='1'>" );
+        final StringBuilder test = new StringBuilder( "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' version='2'>" );
+        for( int i = 0; i < 50; i++ ) {
+            control.append( "<xs:complexType name='T" ).append( i ).append( "'><xs:sequence><xs:element name='e' type='xs:string'/></xs:sequence></xs:complexType>" );
+            if( i % 7 == 3 ) {
+                continue; // removed
+            }
+            final String type = i % 5 == 0 ? "xs:int" : "xs:string";
+            test.append( "<xs:complexType name='T" ).append( 49 - i ).append( "'><xs:sequence><xs:element name='e' type='" ).append( type ).append( "'/></xs:sequence></xs:complexType>" );
+            if( i % 11 == 0 ) {
+                test.append( "<xs:element name='added" ).append( i ).append( "'/>" );
+            }
+        }
+        control.append( "<xs:simpleType name='S'><xs:restriction base='xs:string'/></xs:simpleType></xs:schema>" );
+        test.append( "<xs:simpleType name='S' final='list'><xs:restriction base='xs:token'/></xs:simpleType></xs:schema>" );
+
+        assertSameDifferences( parse( control.toString() ), parse( test.toString() ) );
+        assertSameDifferences( parse( test.toString() ), parse( control.toString() ) );
+    }
+
+    @Test
+    public void shouldIgnoreOnlyTopLevelComponentsInParallel() throws Exception {
+        final String control = "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>"
+                + "<xs:attribute name='X' type='xs:string'/>"
+                + "<xs:complexType name='T'><xs:attribute name='X' type='xs:string'/><xs:attribute name='Y' type='xs:string'/></xs:complexType>"
+                + "<xs:complexType name='U'><xs:sequence/></xs:complexType></xs:schema>";
+        final String test = "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>"
+                + "<xs:attribute name='X' type='xs:int'/>"
+                + "<xs:complexType name='T'><xs:attribute name='X' type='xs:int'/><xs:attribute name='Y' type='xs:int'/></xs:complexType>"
+                + "<xs:complexType name='U'><xs:choice/></xs:complexType></xs:schema>";
+        final IgnoreRules rules = IgnoreRules.parse( Arrays.asList( "attribute name=X" ) );
+
+        final List<String> sequential = describe( new XmlSchemaDiffBuilder().withIgnoreRules( rules ).compare( parse( control ), parse( test ) ).getDifferences() );
+        final List<String> parallel = describe( new XmlSchemaDiffBuilder().withIgnoreRules( rules ).withParallelism( pool ).compare( parse( control ), parse( test ) ).getDifferences() );
+
+        assertThat( parallel, is( sequential ) );
+        assertThat( sequential.stream().anyMatch( diff -> diff.contains( "/xs:complexType[1]/xs:attribute[1]/@type" ) ), is( true ) ); // local attribute X is still compared
+        assertThat( sequential.stream().anyMatch( diff -> diff.contains( "/xs:schema[1]/xs:attribute[1]/@type" ) ), is( false ) );
+    }
+
+    @Test
+    public void shouldRenderSameReport() throws Exception {
+        for( final String fixture : new String[] { "attr-mod", "simple-seq-len", "subnode-remove", "ext-remove" } ) {
+            final Document controlDoc = docBuilder.parse( new File( TESTDATA_FOLDER, fixture + "1.xsd" ) );
+            final Document testDoc = docBuilder.parse( new File( TESTDATA_FOLDER, fixture + "2.xsd" ) );
+
+            assertThat( fixture, render( controlDoc, testDoc, pool, "parallel" ), is( render( controlDoc, testDoc, null, "sequential" ) ) );
+        }
+    }
+
+    /** @return report, with wikEd element ids (numbered by a global counter) left out */
+    private static String render( final Document controlDoc, final Document testDoc, final ForkJoinPool pool, final String name ) throws Exception {
+        final File out = new File( "target/" );
+        final HtmlContentOutput output = HtmlContentOutput.startOutput( out, "diff-report-render-" + name + ".html" );
+        final XmlSchemaDiffReport report = new XmlSchemaDiffReport( output );
+        if( pool != null ) {
+            report.withParallelism( pool );
+        }
+        report.runDiff( controlDoc, testDoc );
+        output.finishOutput();
+        final String text = new String( Files.readAllBytes( new File( out, "diff-report-render-" + name + ".html" ).toPath() ), StandardCharsets.UTF_8 );
+        return text.replaceAll( "diff-inline-[0-9]+", "diff-inline" );
+    }
+
+    private static void assertSameDifferences( final Document controlDoc, final Document testDoc ) {
+        final List<String> sequential = describe( new XmlSchemaDiffBuilder().compare( controlDoc, testDoc ).getDifferences() );
+        final List<String> parallel = describe( new XmlSchemaDiffBuilder().withParallelism( pool ).compare( controlDoc, testDoc ).getDifferences() );
+        assertThat( parallel, is( sequential ) );
+    }
+
+    private static List<String> describe( final Iterable<Difference> differences ) {
+        final List<String> list = new ArrayList<>();
+        for( final Difference diff : differences ) {
+            final Comparison comparison = diff.getComparison();
+            list.add( diff.getResult() + " " + comparison.getType()
+                    + " " + describe( comparison.getControlDetails() ) + " " + describe( comparison.getTestDetails() ) );
+        }
+        return list;
+    }
+
+    private static String describe( final Comparison.Detail detail ) {
+        final Node target = detail.getTarget();
+        final String targetText = target == null ? null : target.getNodeName() + ( target.getParentNode() != null ? " in " + target.getParentNode().getNodeName() : "" );
+        return detail.getXPath() + " (" + detail.getParentXPath() + ") =" + detail.getValue() + " [" + targetText + "]";
+    }
+
+    private static Document parse( final String xml ) throws Exception {
+        return docBuilder.parse( new ByteArrayInputStream( xml.getBytes( StandardCharsets.UTF_8 ) ) );
+    }
+}
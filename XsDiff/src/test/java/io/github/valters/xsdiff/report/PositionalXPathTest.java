@@ -0,0 +1,157 @@
+package io.github.valters.xsdiff.report;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xmlunit.diff.Comparison;
+import org.xmlunit.diff.Difference;
+
+import com.google.common.collect.Maps;
+
+public class PositionalXPathTest {
+
+    protected static final String TESTDATA_FOLDER = "./src/test/resources/unit/";
+
+    private static final StaticNamespaceContext NAMESPACES = new StaticNamespaceContext();
+
+    private static DocumentBuilder docBuilder;
+
+    private final XPath xpath = XmlDomUtils.createXPath();
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        docBuilder = XmlDomUtils.documentBuilder();
+    }
+
+    @Test
+    public void shouldRejectNonPositionalPaths() {
+        assertThat( PositionalXPath.compile( null ), nullValue() );
+        assertThat( PositionalXPath.compile( "" ), nullValue() );
+        assertThat( PositionalXPath.compile( "xs:schema[1]" ), nullValue() );
+        assertThat( PositionalXPath.compile( "//xs:element" ), nullValue() );
+        assertThat( PositionalXPath.compile( "/xs:schema[1]/xs:element[@name='a']" ), nullValue() );
+        assertThat( PositionalXPath.compile( "/xs:schema[1]/@name/xs:element[1]" ), nullValue() );
+        assertThat( PositionalXPath.compile( "/zz:schema[1]" ), nullValue() );
+        assertThat( PositionalXPath.compile( "/xs:schema[last()]" ), nullValue() );
+        assertThat( PositionalXPath.compile( "/xs:schema[1]/*" ), nullValue() );
+
+        assertThat( PositionalXPath.compile( "/" ), notNullValue() );
+        assertThat( PositionalXPath.compile( "/xs:schema[1]/xs:element[2]/@name" ), notNullValue() );
+        assertThat( PositionalXPath.compile( "/xs:schema[1]/text()[1]" ), notNullValue() );
+    }
+
+    @Test
+    public void shouldResolveSameNodesAsXPathForDifferences() throws Exception {
+        for( final Map.Entry<File, File> pair : fixturePairs().entrySet() ) {
+            final Document controlDoc = docBuilder.parse( pair.getKey() );
+            final Document testDoc = docBuilder.parse( pair.getValue() );
+
+            for( final Difference diff : new XmlSchemaDiffBuilder().compare( controlDoc, testDoc ).getDifferences() ) {
+                final Comparison comparison = diff.getComparison();
+                assertSameNode( controlDoc, comparison.getControlDetails().getXPath() );
+                assertSameNode( controlDoc, comparison.getControlDetails().getParentXPath() );
+                assertSameNode( testDoc, comparison.getTestDetails().getXPath() );
+                assertSameNode( testDoc, comparison.getTestDetails().getParentXPath() );
+            }
+        }
+    }
+
+    @Test
+    public void shouldResolveSameNodesAsXPathForAllNodes() throws Exception {
+        for( final File file : new File( TESTDATA_FOLDER ).listFiles( (dir, name) -> name.endsWith( ".xsd" ) ) ) {
+            final Document doc = docBuilder.parse( file );
+            final List<String> paths = new ArrayList<>();
+            collectPaths( doc, "", paths );
+            for( final String path : paths ) {
+                assertThat( path, PositionalXPath.compile( path ), notNullValue() );
+                assertSameNode( doc, path );
+            }
+        }
+    }
+
+    @Test
+    public void shouldResolveSameNodesThroughIndex() throws Exception {
+        for( final File file : new File( TESTDATA_FOLDER ).listFiles( (dir, name) -> name.endsWith( ".xsd" ) ) ) {
+            final Document doc = docBuilder.parse( file );
+            final XPathNodeIndex index = XPathNodeIndex.build( doc );
+            final List<String> paths = new ArrayList<>();
+            collectPaths( doc, "", paths );
+            paths.add( "/" );
+            paths.add( "/xs:schema[1]/xs:element[1000]" );
+            paths.add( "/xs:schema[1]/xs:nosuchthing[1]" );
+            for( final String path : paths ) {
+                final PositionalXPath positional = PositionalXPath.compile( path );
+                assertThat( path, positional.evaluate( index ), sameInstance( positional.evaluate( doc ) ) );
+            }
+        }
+    }
+
+    private void assertSameNode( final Document doc, final String path ) throws Exception {
+        final PositionalXPath positional = PositionalXPath.compile( path );
+        if( positional == null ) {
+            return; // not our grammar (e.g. null xpath of missing node)
+        }
+        final Node expected = (Node) xpath.evaluate( path, doc, XPathConstants.NODE );
+        assertThat( path, positional.evaluate( doc ), sameInstance( expected ) );
+    }
+
+    /** all *1.xsd files that have a *2.xsd counterpart */
+    private static Map<File, File> fixturePairs() {
+        final Map<File, File> pairs = Maps.newTreeMap();
+        for( final File control : new File( TESTDATA_FOLDER ).listFiles( (dir, name) -> name.endsWith( "1.xsd" ) ) ) {
+            final File test = new File( control.getParentFile(), control.getName().replace( "1.xsd", "2.xsd" ) );
+            if( test.exists() ) {
+                pairs.put( control, test );
+            }
+        }
+        return pairs;
+    }
+
+    /** generate xmlunit style positional paths for every element, attribute and text node */
+    private static void collectPaths( final Node parent, final String parentPath, final List<String> paths ) {
+        final Map<String, Integer> counters = Maps.newHashMap();
+        for( Node child = parent.getFirstChild(); child != null; child = child.getNextSibling() ) {
+            final String step;
+            if( child.getNodeType() == Node.ELEMENT_NODE ) {
+                step = NAMESPACES.getPrefix( child.getNamespaceURI() ) + ":" + child.getLocalName(); // same prefixes as xmlunit is told to use
+            }
+            else if( child.getNodeType() == Node.TEXT_NODE ) {
+                step = "text()";
+            }
+            else if( child.getNodeType() == Node.COMMENT_NODE ) {
+                step = "comment()";
+            }
+            else {
+                continue;
+            }
+            final int position = counters.merge( step, 1, Integer::sum );
+            final String path = parentPath + "/" + step + "[" + position + "]";
+            paths.add( path );
+
+            final NamedNodeMap attributes = child.getAttributes();
+            for( int i = 0; attributes != null && i < attributes.getLength(); i++ ) {
+                final String attrName = attributes.item( i ).getNodeName();
+                if( ! attrName.startsWith( "xmlns" ) ) {
+                    paths.add( path + "/@" + attrName );
+                }
+            }
+            collectPaths( child, path, paths );
+        }
+    }
+}
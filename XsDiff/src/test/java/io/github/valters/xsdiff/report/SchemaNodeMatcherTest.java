@@ -0,0 +1,131 @@
+package io.github.valters.xsdiff.report;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilder;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xmlunit.diff.ComparisonType;
+import org.xmlunit.diff.Difference;
+
+public class SchemaNodeMatcherTest {
+
+    private static final String SCHEMA_START = "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>";
+    private static final String SCHEMA_END = "</xs:schema>";
+
+    private static DocumentBuilder docBuilder;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        docBuilder = XmlDomUtils.documentBuilder();
+    }
+
+    @Test
+    public void shouldKeyComponents() throws Exception {
+        final Document doc = parse( SCHEMA_START
+                + "<xs:attribute name='a'/><xs:attributeGroup ref='xs:g'/><xs:enumeration value='V'/><xs:sequence/><xs:element/>"
+                + SCHEMA_END );
+        final List<Element> children = elements( doc.getDocumentElement() );
+        assertThat( SchemaNodeMatcher.componentKey( children.get( 0 ) ), is( "name=a" ) );
+        assertThat( SchemaNodeMatcher.componentKey( children.get( 1 ) ), is( "ref=xs:g" ) );
+        assertThat( SchemaNodeMatcher.componentKey( children.get( 2 ) ), is( "value=V" ) );
+        assertThat( SchemaNodeMatcher.componentKey( children.get( 3 ) ), nullValue() );
+        assertThat( SchemaNodeMatcher.componentKey( children.get( 4 ) ), nullValue() );
+    }
+
+    @Test
+    public void shouldPairReorderedComponentsByName() throws Exception {
+        final Document controlDoc = parse( SCHEMA_START
+                + "<xs:complexType name='T'><xs:attribute name='a' type='xs:string'/><xs:attribute name='b' type='xs:int'/></xs:complexType>"
+                + "<xs:simpleType name='S'><xs:restriction base='xs:string'><xs:enumeration value='X'/><xs:enumeration value='Y'/></xs:restriction></xs:simpleType>"
+                + SCHEMA_END );
+        final Document testDoc = parse( SCHEMA_START
+                + "<xs:simpleType name='S'><xs:restriction base='xs:string'><xs:enumeration value='Y'/><xs:enumeration value='X'/></xs:restriction></xs:simpleType>"
+                + "<xs:complexType name='T'><xs:attribute name='b' type='xs:int'/><xs:attribute name='a' type='xs:string'/></xs:complexType>"
+                + SCHEMA_END );
+
+        assertOnlySequenceChanged( new XmlSchemaDiffBuilder().compare( controlDoc, testDoc ).getDifferences() );
+    }
+
+    @Test
+    public void shouldPairReferencedElementsByRef() throws Exception {
+        final Document controlDoc = parse( SCHEMA_START
+                + "<xs:complexType name='T'><xs:sequence><xs:element ref='a' minOccurs='0'/><xs:element ref='b'/><xs:element name='c'/></xs:sequence></xs:complexType>"
+                + SCHEMA_END );
+        final Document testDoc = parse( SCHEMA_START
+                + "<xs:complexType name='T'><xs:sequence><xs:element name='c'/><xs:element ref='b'/><xs:element ref='a' minOccurs='0'/></xs:sequence></xs:complexType>"
+                + SCHEMA_END );
+
+        final Element controlSequence = elements( elements( controlDoc.getDocumentElement() ).get( 0 ) ).get( 0 );
+        final Element testSequence = elements( elements( testDoc.getDocumentElement() ).get( 0 ) ).get( 0 );
+        int pairs = 0;
+        for( final Map.Entry<Node, Node> pair : new SchemaNodeMatcher().match( new ArrayList<>( elements( controlSequence ) ), new ArrayList<>( elements( testSequence ) ) ) ) {
+            final Element control = (Element) pair.getKey();
+            final Element test = (Element) pair.getValue();
+            assertThat( control.getAttribute( "ref" ), is( test.getAttribute( "ref" ) ) );
+            assertThat( control.getAttribute( "name" ), is( test.getAttribute( "name" ) ) );
+            pairs++;
+        }
+        assertThat( pairs, is( 3 ) );
+
+        assertOnlySequenceChanged( new XmlSchemaDiffBuilder().compare( controlDoc, testDoc ).getDifferences() );
+    }
+
+    @Test
+    public void shouldMatchManyTopLevelTypes() throws Exception {
+        final int types = 5000;
+        final StringBuilder control = new StringBuilder( SCHEMA_START );
+        final StringBuilder test = new StringBuilder( SCHEMA_START );
+        for( int i = 0; i < types; i++ ) {
+            control.append( "<xs:complexType name='T" ).append( i ).append( "'><xs:sequence/></xs:complexType>" );
+            test.append( "<xs:complexType name='T" ).append( types - 1 - i ).append( "'><xs:sequence/></xs:complexType>" );
+        }
+
+        final Document controlDoc = parse( control.append( SCHEMA_END ).toString() );
+        final Document testDoc = parse( test.append( SCHEMA_END ).toString() );
+
+        final SchemaNodeMatcher matcher = new SchemaNodeMatcher();
+        int pairs = 0;
+        for( final Map.Entry<Node, Node> pair : matcher.match( children( controlDoc ), children( testDoc ) ) ) {
+            assertThat( ( (Element) pair.getKey() ).getAttribute( "name" ), is( ( (Element) pair.getValue() ).getAttribute( "name" ) ) );
+            pairs++;
+        }
+        assertThat( pairs, is( types ) );
+    }
+
+    private static void assertOnlySequenceChanged( final Iterable<Difference> differences ) {
+        for( final Difference diff : differences ) {
+            assertThat( diff.toString(), diff.getComparison().getType(), is( ComparisonType.CHILD_NODELIST_SEQUENCE ) );
+        }
+    }
+
+    private static Document parse( final String xml ) throws Exception {
+        return docBuilder.parse( new ByteArrayInputStream( xml.getBytes( StandardCharsets.UTF_8 ) ) );
+    }
+
+    private static List<Node> children( final Document doc ) {
+        return new ArrayList<>( elements( doc.getDocumentElement() ) );
+    }
+
+    private static List<Element> elements( final Element parent ) {
+        final List<Element> list = new ArrayList<>();
+        for( Node child = parent.getFirstChild(); child != null; child = child.getNextSibling() ) {
+            if( child instanceof Element ) {
+                list.add( (Element) child );
+            }
+        }
+        return list;
+    }
+}
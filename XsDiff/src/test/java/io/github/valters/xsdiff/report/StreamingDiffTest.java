@@ -0,0 +1,59 @@
+package io.github.valters.xsdiff.report;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilder;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.xmlunit.diff.Comparison;
+import org.xmlunit.diff.ComparisonResult;
+import org.xmlunit.diff.Difference;
+
+public class StreamingDiffTest {
+
+    protected static final String TESTDATA_FOLDER = "./src/test/resources/unit/";
+
+    private static DocumentBuilder docBuilder;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        docBuilder = XmlDomUtils.documentBuilder();
+    }
+
+    @Test
+    public void shouldStreamSameDifferencesAsDiff() throws Exception {
+        for( final File control : new File( TESTDATA_FOLDER ).listFiles( (dir, name) -> name.endsWith( "1.xsd" ) ) ) {
+            final File test = new File( control.getParentFile(), control.getName().replace( "1.xsd", "2.xsd" ) );
+            if( ! test.exists() ) {
+                continue;
+            }
+            assertSameDifferences( docBuilder.parse( control ), docBuilder.parse( test ) );
+            assertSameDifferences( docBuilder.parse( test ), docBuilder.parse( control ) );
+        }
+    }
+
+    private static void assertSameDifferences( final Document controlDoc, final Document testDoc ) {
+        final List<String> collected = new ArrayList<>();
+        for( final Difference diff : new XmlSchemaDiffBuilder().compare( controlDoc, testDoc ).getDifferences() ) {
+            collected.add( describe( diff.getComparison(), diff.getResult() ) );
+        }
+
+        final List<String> streamed = new ArrayList<>();
+        new XmlSchemaDiffBuilder().compare( controlDoc, testDoc, ( comparison, outcome ) -> streamed.add( describe( comparison, outcome ) ) );
+
+        assertThat( streamed, is( collected ) );
+    }
+
+    private static String describe( final Comparison comparison, final ComparisonResult outcome ) {
+        return outcome + " " + comparison.getType()
+                + " " + comparison.getControlDetails().getXPath() + "=" + comparison.getControlDetails().getValue()
+                + " " + comparison.getTestDetails().getXPath() + "=" + comparison.getTestDetails().getValue();
+    }
+}
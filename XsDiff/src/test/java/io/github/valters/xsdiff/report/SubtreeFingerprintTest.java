@@ -0,0 +1,96 @@
+package io.github.valters.xsdiff.report;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.parsers.DocumentBuilder;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.xmlunit.diff.Comparison;
+import org.xmlunit.diff.Difference;
+
+public class SubtreeFingerprintTest {
+
+    protected static final String TESTDATA_FOLDER = "./src/test/resources/unit/";
+
+    private static final String SCHEMA_START = "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>";
+    private static final String SCHEMA_END = "</xs:schema>";
+
+    private static DocumentBuilder docBuilder;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        docBuilder = XmlDomUtils.documentBuilder();
+    }
+
+    @Test
+    public void shouldIgnoreAttributeOrder() throws Exception {
+        final Document a = parse( SCHEMA_START + "<xs:element name='a' type='xs:string'/>" + SCHEMA_END );
+        final Document b = parse( SCHEMA_START + "<xs:element type='xs:string' name='a'/>" + SCHEMA_END );
+        final Document c = parse( SCHEMA_START + "<xs:element type='xs:int' name='a'/>" + SCHEMA_END );
+
+        assertThat( SubtreeFingerprint.of( a ).get( a ), is( SubtreeFingerprint.of( b ).get( b ) ) );
+        assertThat( SubtreeFingerprint.of( a ).get( a ), not( SubtreeFingerprint.of( c ).get( c ) ) );
+    }
+
+    @Test
+    public void shouldFindIdenticalSiblings() throws Exception {
+        final Document controlDoc = parse( SCHEMA_START
+                + "<xs:complexType name='A'><xs:sequence><xs:element name='x'/></xs:sequence></xs:complexType>"
+                + "<xs:complexType name='B'><xs:sequence><xs:element name='y'/></xs:sequence></xs:complexType>"
+                + SCHEMA_END );
+        final Document testDoc = parse( SCHEMA_START
+                + "<xs:complexType name='A'><xs:sequence><xs:element name='x'/></xs:sequence></xs:complexType>"
+                + "<xs:complexType name='B'><xs:sequence><xs:element name='z'/></xs:sequence></xs:complexType>"
+                + SCHEMA_END );
+
+        final Set<Node> identical = SubtreeFingerprint.identicalSubtrees( controlDoc, testDoc, new SchemaNodeMatcher() );
+        assertThat( identical.contains( controlDoc.getDocumentElement().getFirstChild() ), is( true ) );
+        assertThat( identical.contains( testDoc.getDocumentElement().getFirstChild() ), is( true ) );
+        assertThat( identical.contains( controlDoc.getDocumentElement().getLastChild() ), is( false ) );
+    }
+
+    @Test
+    public void shouldReportSameDifferencesWhenPruning() throws Exception {
+        for( final File control : new File( TESTDATA_FOLDER ).listFiles( (dir, name) -> name.endsWith( "1.xsd" ) ) ) {
+            final File test = new File( control.getParentFile(), control.getName().replace( "1.xsd", "2.xsd" ) );
+            if( ! test.exists() ) {
+                continue;
+            }
+            assertSameDifferences( docBuilder.parse( control ), docBuilder.parse( test ) );
+            assertSameDifferences( docBuilder.parse( test ), docBuilder.parse( control ) );
+        }
+    }
+
+    private static void assertSameDifferences( final Document controlDoc, final Document testDoc ) {
+        final List<String> full = describe( new XmlSchemaDiffBuilder().withoutSubtreePruning().compare( controlDoc, testDoc ).getDifferences() );
+        final List<String> pruned = describe( new XmlSchemaDiffBuilder().compare( controlDoc, testDoc ).getDifferences() );
+        assertThat( pruned, is( full ) );
+    }
+
+    private static List<String> describe( final Iterable<Difference> differences ) {
+        final List<String> list = new ArrayList<>();
+        for( final Difference diff : differences ) {
+            final Comparison comparison = diff.getComparison();
+            list.add( diff.getResult() + " " + comparison.getType()
+                    + " " + comparison.getControlDetails().getXPath() + "=" + comparison.getControlDetails().getValue()
+                    + " " + comparison.getTestDetails().getXPath() + "=" + comparison.getTestDetails().getValue() );
+        }
+        return list;
+    }
+
+    private static Document parse( final String xml ) throws Exception {
+        return docBuilder.parse( new ByteArrayInputStream( xml.getBytes( StandardCharsets.UTF_8 ) ) );
+    }
+}
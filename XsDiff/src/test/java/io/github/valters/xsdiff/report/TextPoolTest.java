@@ -0,0 +1,57 @@
+package io.github.valters.xsdiff.report;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.Test;
+
+import io.github.valters.xsdiff.format.TextPool;
+
+public class TextPoolTest {
+
+    @Test
+    public void shouldStoreEachTextOnce() {
+        final TextPool pool = new TextPool();
+        final int first = pool.add( "<element name=\"ä€\"/>" );
+        final int other = pool.add( "<element name=\"b\"/>" );
+
+        assertThat( pool.add( new String( "<element name=\"ä€\"/>" ) ), is( first ) );
+        assertThat( other, not( first ) );
+        assertThat( pool.size(), is( 2 ) );
+        assertThat( pool.get( first ), is( "<element name=\"ä€\"/>" ) );
+        assertThat( pool.length( first ), is( 20 ) );
+    }
+
+    @Test
+    public void shouldKeepTextsWhenCompacted() {
+        final TextPool pool = new TextPool();
+        final int first = pool.add( "<element name=\"ä€\"/>" );
+        final int empty = pool.add( "" );
+        pool.compact();
+
+        assertThat( pool.get( first ), is( "<element name=\"ä€\"/>" ) );
+        assertThat( pool.length( first ), is( 20 ) );
+        assertThat( pool.isEmpty( empty ), is( true ) );
+        assertThat( pool.size(), is( 2 ) );
+    }
+
+    @Test( expected = IllegalStateException.class )
+    public void shouldNotAddWhenCompacted() {
+        final TextPool pool = new TextPool();
+        pool.compact();
+        pool.add( "text" );
+    }
+
+    @Test
+    public void shouldKeepNullAndEmptyText() {
+        final TextPool pool = new TextPool();
+
+        assertThat( pool.add( null ), is( TextPool.NONE ) );
+        assertThat( pool.get( TextPool.NONE ), nullValue() );
+        assertThat( pool.isEmpty( TextPool.NONE ), is( true ) );
+        assertThat( pool.get( pool.add( "" ) ), is( "" ) );
+        assertThat( pool.isEmpty( pool.add( "" ) ), is( true ) );
+    }
+}
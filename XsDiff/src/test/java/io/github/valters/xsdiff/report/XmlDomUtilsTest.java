@@ -3,8 +3,13 @@ package io.github.valters.xsdiff.report;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import javax.xml.parsers.DocumentBuilder;
 
 import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 import io.github.valters.xsdiff.report.XmlDomUtils;
 
@@ -46,4 +51,24 @@ public class XmlDomUtilsTest {
         assertThat( XmlDomUtils.wideContext( "/a/b//c//d//e" ), is( "/a/b"  ) );
     }
 
+    @Test
+    public void shouldReuseCompiledXpath() throws Exception {
+        final DocumentBuilder b = XmlDomUtils.documentBuilder();
+        final Document doc = b.parse( this.getClass().getClassLoader().getResourceAsStream( "unit/simple-seq.xsd" ) );
+
+        final XmlDomUtils utils = new XmlDomUtils();
+        final Node first = utils.findNode( doc, "//xs:complexType[@name='Complex_Type1']" );
+        final Node second = utils.findNode( doc, "//xs:complexType[@name='Complex_Type1']" );
+
+        assertThat( second, is( first ) );
+        assertThat( utils.xpathCacheStats().missCount(), is( 1L ) );
+        assertThat( utils.xpathCacheStats().hitCount(), is( 1L ) );
+    }
+
+    @Test
+    public void shouldReusePooledTransformerPerThread() throws Exception {
+        assertThat( XmlDomUtils.pooledFragmentTransformer(), sameInstance( XmlDomUtils.pooledFragmentTransformer() ) );
+        assertThat( XmlDomUtils.pooledDocumentBuilder(), sameInstance( XmlDomUtils.pooledDocumentBuilder() ) );
+    }
+
 }